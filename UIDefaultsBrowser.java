@@ -8,22 +8,92 @@ import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.font.TextLayout;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.System.Logger.Level;
 import java.lang.reflect.Array;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.stream.Collectors;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import javax.swing.Icon;
 import javax.swing.InputMap;
 import javax.swing.JButton;
@@ -32,37 +102,2714 @@ import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JMenuItem;
 import javax.swing.JRadioButton;
+import javax.swing.KeyStroke;
 import javax.swing.Painter;
 import javax.swing.SwingUtilities;
 import javax.swing.UIDefaults;
 import javax.swing.UIManager;
 import javax.swing.border.Border;
+import javax.swing.plaf.BorderUIResource;
+import javax.swing.plaf.IconUIResource;
+import javax.tools.ToolProvider;
+
+public class UIDefaultsBrowser {
+    private static final System.Logger LOG = System.getLogger(UIDefaultsBrowser.class.getName());
+
+    private static final int PREVIEW_LARGE_WIDTH = 512;
+    private static final int PREVIEW_LARGE_HEIGHT = PREVIEW_LARGE_WIDTH;
+
+    /** previews with more pixels are painted scaled down, so they still show inline. */
+    static final long DEFAULT_PIXEL_BUDGET = (long) PREVIEW_LARGE_WIDTH * PREVIEW_LARGE_HEIGHT;
+
+    /** encoding and writing PNG files happens here, painting stays on the EDT. */
+    private static final int ENCODER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService ENCODER =
+            Executors.newFixedThreadPool(
+                    ENCODER_THREADS,
+                    runnable -> {
+                        var thread = new Thread(runnable, "png-encoder");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    /** upper bound of images handed to ENCODER but not yet written. */
+    private static final int ENCODE_QUEUE_LIMIT = ENCODER_THREADS * 4;
+
+    private final Semaphore encodeSlots = new Semaphore(ENCODE_QUEUE_LIMIT);
+
+    private int IMAGE_COUNT = 0;
+
+    /** pixel digest to already written image file, shared by every preview with equal pixels. */
+    private final Map<String, Path> imageIndex = new HashMap<>();
+
+    private int imageEncodes = 0;
+    private int imageDedupHits = 0;
+    private final Map<Path, Integer> imageShares = new HashMap<>();
+
+    /** bumped when the manifest layout or the row markup changes, so old manifests are ignored. */
+    private static final String MANIFEST_VERSION = "4";
+
+    private static final String STYLE =
+            """
+            <style>
+            .generic_to_string {
+                word-break: break-word;
+            }
+            .no-break-space {
+                white-space: pre;
+            }
+            .sprite {
+                display: inline-block;
+                background-repeat: no-repeat;
+            }
+            .fragment {
+                width: 100%;
+                height: 20em;
+                border: none;
+            }
+            </style>
+            """;
+
+    private static final String PAGE_HEAD =
+            """
+            <!DOCTYPE html>
+            <html lang="en-US">
+            <head>
+            %s<meta charset="utf-8">
+            <meta name="viewport" content="width=device-width">
+            <title>%s</title>
+            </head>
+            """;
+
+    private static final String FRAGMENT_PAGE =
+            """
+            <!DOCTYPE html>
+            <html lang="en-US">
+            <head>
+            %s<meta charset="utf-8">
+            <title>%s</title>
+            </head>
+            <body>
+            %s</body>
+            </html>
+            """;
+
+    private static final String FOOTER =
+            """
+            <footer id="footer">
+            <p>If the value is <mark>UIDefaults.ActiveValue</mark> or \
+            <mark>UIDefaults.LazyValue</mark>, they are marked.</p>
+            </footer>""";
+
+    private static final String SEARCH =
+            """
+            <p><input type="search" id="search" placeholder="filter keys, types or #colors" \
+            autocomplete="off" size="40"></p>
+            <ol id="search-results"></ol>
+            <script src="search.js" defer></script>""";
+
+    /**
+     * the client side of search.js, filters the UIDEFAULTS_SEARCH rows written before it. terms
+     * of three or more characters are looked up in the trigram index, shorter ones scan the rows.
+     */
+    private static final String SEARCH_SCRIPT =
+            """
+            (function () {
+              var index = UIDEFAULTS_SEARCH;
+              var rows = index.rows;
+              var limit = 200;
+              function text(row) {
+                return (row[1] + " " + row[2] + (row[3] ? " #" + row[3] : "")).toLowerCase();
+              }
+              function postings(gram) {
+                var deltas = index.grams[gram];
+                if (!deltas) {
+                  return [];
+                }
+                var list = [], id = 0;
+                for (var i = 0; i < deltas.length; i++) {
+                  id += deltas[i];
+                  list.push(id);
+                }
+                return list;
+              }
+              function intersect(a, b) {
+                var result = [], i = 0, j = 0;
+                while (i < a.length && j < b.length) {
+                  if (a[i] < b[j]) {
+                    i++;
+                  } else if (a[i] > b[j]) {
+                    j++;
+                  } else {
+                    result.push(a[i]);
+                    i++;
+                    j++;
+                  }
+                }
+                return result;
+              }
+              function find(term) {
+                var candidates = null;
+                if (term.length >= 3) {
+                  for (var i = 0; i + 3 <= term.length && (!candidates || candidates.length); i++) {
+                    var list = postings(term.substr(i, 3));
+                    candidates = candidates ? intersect(candidates, list) : list;
+                  }
+                } else {
+                  candidates = rows.map(function (row, id) { return id; });
+                }
+                return candidates.filter(function (id) {
+                  return text(rows[id]).indexOf(term) >= 0;
+                });
+              }
+              function search(query) {
+                var terms = query.toLowerCase().split(" ").filter(function (t) { return t; });
+                var found = null;
+                for (var i = 0; i < terms.length && (!found || found.length); i++) {
+                  found = found ? intersect(found, find(terms[i])) : find(terms[i]);
+                }
+                return found || [];
+              }
+              function show(input, results) {
+                results.replaceChildren();
+                var found = search(input.value);
+                found.slice(0, limit).forEach(function (id) {
+                  var row = rows[id];
+                  var link = document.createElement("a");
+                  link.href = index.pages[row[0]] + "#" + encodeURIComponent(row[1]);
+                  link.textContent = row[1];
+                  var item = document.createElement("li");
+                  item.append(link, " " + row[2] + (row[3] ? " #" + row[3] : ""));
+                  results.append(item);
+                });
+                if (found.length > limit) {
+                  var more = document.createElement("li");
+                  more.textContent = (found.length - limit) + " more";
+                  results.append(more);
+                }
+              }
+              var input = document.getElementById("search");
+              var results = document.getElementById("search-results");
+              input.addEventListener("input", function () { show(input, results); });
+            })();
+            """;
+
+    private static final Pattern IDENTITY_HASH = Pattern.compile("@\\p{XDigit}+");
+
+    private record ManifestEntry(String fingerprint, List<String> images, String row) {}
+
+    /** rows of the previous run in the same base directory, keyed by UIDefaults key. */
+    private final Map<String, ManifestEntry> previousManifest = new HashMap<>();
+
+    /** previousManifest holds every row, freshly rendered by the shards of this run. */
+    private boolean sharded;
+
+    /** where the rows of previousManifest and their images are, the base of a shard's parent. */
+    private Path previousBase;
+
+    /** the metrics of each row, by key, as measured by the shard that rendered it. */
+    private final Map<String, KeyMetrics> shardMetrics = new HashMap<>();
+
+    /** names of the images the row being rendered refers to. */
+    private List<String> rowImages = new ArrayList<>();
+
+    /** a preview as the snapshot records it: path relative to base and pixel digest. */
+    record Preview(String ref, String digest) {}
+
+    private List<Preview> rowPreviews = new ArrayList<>();
+
+    /** image file name to pixel digest, the reverse of imageIndex. */
+    private final Map<String, String> imageDigests = new HashMap<>();
+
+    private final Set<String> referencedImages = new HashSet<>();
+    private int rowsReused = 0;
+    private int rowsRendered = 0;
+
+    /** previews up to this size are packed into atlas sheets in --atlas mode. */
+    private static final int ATLAS_MAX_PREVIEW = 64;
+
+    private static final int ATLAS_SHEET_SIZE = 1024;
+
+    private record Sprite(String sheet, int x, int y, int width, int height) {}
+
+    /** pixel digest to already packed sprite, the atlas counterpart of imageIndex. */
+    private final Map<String, Sprite> spriteIndex = new HashMap<>();
+
+    private BufferedImage atlasSheet;
+    private String atlasSheetName;
+    private int atlasSheets = 0;
+    private int atlasX = 0;
+    private int atlasY = 0;
+    private int atlasShelfHeight = 0;
+
+    private final SurfacePool surfaces = new SurfacePool();
+
+    /** a row as the search index sees it. */
+    private record SearchEntry(String section, String key, String type, String hex) {}
+
+    private final List<SearchEntry> searchEntries = new ArrayList<>();
+
+    private final ValueResolver resolver;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final List<KeyMetrics> metrics = new ArrayList<>();
+
+    /** an encoded image as metrics.json reports it. */
+    private record ImageMetrics(
+            String name, String key, String format, int width, int height, long bytes, long nanos) {
+        String toJson() {
+            return """
+                        {"image": %s, "key": %s, "format": %s, "width": %d, "height": %d, \
+                    "bytes": %d, "encodeNanos": %d}"""
+                    .formatted(
+                            jsonString(name),
+                            jsonString(key),
+                            jsonString(format),
+                            width,
+                            height,
+                            bytes,
+                            nanos);
+        }
+
+        String toTsv() {
+            return String.join(
+                    "\t",
+                    name,
+                    escape(key),
+                    format,
+                    Integer.toString(width),
+                    Integer.toString(height),
+                    Long.toString(bytes),
+                    Long.toString(nanos));
+        }
+
+        static ImageMetrics fromTsv(String[] fields) {
+            return new ImageMetrics(
+                    fields[0],
+                    unescape(fields[1]),
+                    fields[2],
+                    Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]),
+                    Long.parseLong(fields[5]),
+                    Long.parseLong(fields[6]));
+        }
+    }
+
+    /** filled by the ENCODER threads. */
+    private final List<ImageMetrics> imageMetrics = Collections.synchronizedList(new ArrayList<>());
+
+    /** the metrics of the row being rendered, images handed to ENCODER report to it. */
+    private KeyMetrics rowMetrics;
+
+    private final Options options;
+
+    private static boolean isPreviewLarge(int width, int height) {
+        return width > PREVIEW_LARGE_WIDTH || height > PREVIEW_LARGE_HEIGHT;
+    }
+
+    public static final void main(String... args) {
+        var options = Options.parse(args);
+        if (options == null) {
+            System.out.println(
+                    """
+                    Usage:
+                        java UIDefaultsBrowser.java [options] [output_dir]
+                        java -jar uidefaults-browser.jar [options] [output_dir]
+
+                    Options:
+                        --output=dir            the output directory, instead of output_dir
+                        --laf=name[,name...]    the LookAndFeels to snapshot, one after the
+                                                other, by installed name such as Nimbus or by
+                                                class name, swing.defaultlaf by default
+                        --all                   snapshot every installed LookAndFeel in this JVM
+                        --headless              run without a display, previews are painted
+                                                offscreen either way
+                        --atlas                 pack small previews into shared sprite sheets
+                        --resolve-timeout=ms    time budget of a single lazy or active value,
+                                                2000 ms by default
+                        --paged                 one page per component prefix, linked from
+                                                UIDefaults.html
+                        --pixel-budget=pixels   previews with more pixels are scaled down,
+                                                262144 (512 * 512) by default
+                        --full-size             also write scaled down previews at full
+                                                size, painted in strips within the budget
+                        --png-level=0..9        deflate level of the previews, 9 is smallest,
+                                                1 fastest, 6 by default
+                        --shards[=n]            render in n child JVMs, one per core by
+                                                default, and merge their rows, not with
+                                                --atlas, with --bundle the shards render
+                                                every row again
+                        --bundle                write everything into one <LookAndFeel>.zip
+                                                instead of a directory of small files
+                        --snapshot              also export the resolved defaults to
+                                                UIDefaults.snapshot
+                        --diff before after     report the keys that differ between two
+                                                snapshots, each a UIDefaults.snapshot file
+                                                or the directory holding it
+                        --serve[=port]          serve the report from 127.0.0.1, 8080 by
+                                                default, rendering pages and previews when
+                                                they are first requested, output_dir is not
+                                                needed
+                        --bench                 benchmark the rendering hot paths on Metal and
+                                                Nimbus instead, output_dir is not needed
+                        --train-cds=dir         package this browser into dir as a jar, which
+                                                also takes renderers from the class path, and
+                                                record a class data sharing archive for it
+                                                with a training run, output_dir is not needed
+                    """);
+            return;
+        }
+        if (options.headless) {
+            // before anything asks the GraphicsEnvironment, which decides once
+            System.setProperty("java.awt.headless", "true");
+        }
+        if (options.trainCds != null) {
+            CdsTraining.run(options.trainCds);
+        } else if (options.bench) {
+            SwingUtilities.invokeLater(Bench::run);
+        } else if (options.servePort >= 0) {
+            SwingUtilities.invokeLater(
+                    () -> {
+                        if (options.lookAndFeels.isEmpty()
+                                || setLookAndFeel(options.lookAndFeels.get(0))) {
+                            Server.start(options);
+                        }
+                    });
+        } else if (options.diffBefore != null) {
+            SnapshotDiff.run(options.diffBefore, options.diffAfter, Paths.get(options.output));
+        } else if (options.allLookAndFeels) {
+            SwingUtilities.invokeLater(
+                    () ->
+                            snapshotEach(
+                                    options,
+                                    Arrays.stream(UIManager.getInstalledLookAndFeels())
+                                            .map(UIManager.LookAndFeelInfo::getClassName)
+                                            .toList()));
+        } else if (!options.lookAndFeels.isEmpty()) {
+            SwingUtilities.invokeLater(() -> snapshotEach(options, options.lookAndFeels));
+        } else {
+            SwingUtilities.invokeLater(() -> new UIDefaultsBrowser(options));
+        }
+    }
+
+    /**
+     * scratch surfaces for the renderers, bucketed by power of two sizes. a surface is borrowed
+     * for one row and comes back with releaseAll, so its int array is reused by later rows instead
+     * of becoming garbage. EDT only.
+     */
+    private static final class SurfacePool {
+        private static final int MIN_SIDE = 16;
+
+        /** larger surfaces are rare, allocating them is cheaper than keeping them around. */
+        private static final int MAX_SIDE = 512;
+
+        private final Map<Long, ArrayDeque<BufferedImage>> free = new HashMap<>();
+        private final List<BufferedImage> borrowed = new ArrayList<>();
+        private int hits = 0;
+        private int misses = 0;
+
+        /** returns a cleared width * height view of a pooled surface. */
+        BufferedImage acquire(int width, int height) {
+            int bucketWidth = bucket(width);
+            int bucketHeight = bucket(height);
+            if (bucketWidth > MAX_SIDE || bucketHeight > MAX_SIDE) {
+                misses++;
+                return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            var queue = free.get(key(bucketWidth, bucketHeight));
+            var surface = queue == null ? null : queue.poll();
+            if (surface == null) {
+                misses++;
+                surface = new BufferedImage(bucketWidth, bucketHeight, BufferedImage.TYPE_INT_ARGB);
+            } else {
+                hits++;
+                int[] pixels = ((DataBufferInt) surface.getRaster().getDataBuffer()).getData();
+                for (int y = 0; y < height; y++) {
+                    Arrays.fill(pixels, y * bucketWidth, y * bucketWidth + width, 0);
+                }
+            }
+            borrowed.add(surface);
+            return surface.getSubimage(0, 0, width, height);
+        }
+
+        void releaseAll() {
+            for (var surface : borrowed) {
+                free.computeIfAbsent(
+                                key(surface.getWidth(), surface.getHeight()),
+                                k -> new ArrayDeque<>())
+                        .push(surface);
+            }
+            borrowed.clear();
+        }
+
+        double hitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        private static int bucket(int side) {
+            return Math.max(MIN_SIDE, Integer.highestOneBit(Math.max(1, side - 1)) << 1);
+        }
+
+        private static long key(int width, int height) {
+            return ((long) width << 32) | height;
+        }
+    }
+
+    /** what one UIDefaults key cost. the encode fields are filled in by ENCODER threads. */
+    private static final class KeyMetrics {
+        private final String key;
+        private String renderer;
+        private boolean reused;
+        private long resolveNanos;
+        private long paintNanos;
+        private long queueNanos;
+        private long allocatedBytes;
+        private long encodeNanos;
+        private long encodeAllocatedBytes;
+        private long bytesWritten;
+
+        KeyMetrics(String key) {
+            this.key = key;
+        }
+
+        synchronized void addEncode(long nanos, long allocated, long bytes) {
+            encodeNanos += nanos;
+            encodeAllocatedBytes += allocated;
+            bytesWritten += bytes;
+        }
+
+        /** one line of the metrics.tsv a shard hands to its coordinator. */
+        synchronized String toTsv() {
+            return String.join(
+                    "\t",
+                    escape(key),
+                    renderer,
+                    Boolean.toString(reused),
+                    Long.toString(resolveNanos),
+                    Long.toString(paintNanos),
+                    Long.toString(queueNanos),
+                    Long.toString(allocatedBytes),
+                    Long.toString(encodeNanos),
+                    Long.toString(encodeAllocatedBytes),
+                    Long.toString(bytesWritten));
+        }
+
+        static KeyMetrics fromTsv(String[] fields) {
+            var metrics = new KeyMetrics(unescape(fields[0]));
+            metrics.renderer = fields[1];
+            metrics.reused = Boolean.parseBoolean(fields[2]);
+            metrics.resolveNanos = Long.parseLong(fields[3]);
+            metrics.paintNanos = Long.parseLong(fields[4]);
+            metrics.queueNanos = Long.parseLong(fields[5]);
+            metrics.allocatedBytes = Long.parseLong(fields[6]);
+            metrics.encodeNanos = Long.parseLong(fields[7]);
+            metrics.encodeAllocatedBytes = Long.parseLong(fields[8]);
+            metrics.bytesWritten = Long.parseLong(fields[9]);
+            return metrics;
+        }
+
+        synchronized void writeJson(Appendable json) throws IOException {
+            json.append(
+                    """
+                        {"key": %s, "renderer": %s, "reused": %s, "resolveNanos": %d, \
+                    "paintNanos": %d, "queueNanos": %d, "encodeNanos": %d, "bytesWritten": %d, \
+                    "allocatedBytes": %d}"""
+                            .formatted(
+                                    jsonString(key),
+                                    jsonString(renderer),
+                                    reused,
+                                    resolveNanos,
+                                    paintNanos,
+                                    queueNanos,
+                                    encodeNanos,
+                                    bytesWritten,
+                                    allocatedBytes + encodeAllocatedBytes));
+        }
+    }
+
+    @Name("UIDefaultsBrowser.Row")
+    @Label("UIDefaults Row")
+    @Category("UIDefaultsBrowser")
+    static final class RowEvent extends Event {
+        @Label("Key")
+        String key;
+
+        @Label("Renderer")
+        String renderer;
+
+        @Label("Resolve Time")
+        @Timespan
+        long resolveNanos;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("UIDefaultsBrowser.Encode")
+    @Label("PNG Encode")
+    @Category("UIDefaultsBrowser")
+    static final class EncodeEvent extends Event {
+        @Label("Image")
+        String image;
+
+        @Label("Key")
+        String key;
+
+        @Label("Format")
+        String format;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /** stands in for a lazy or active value whose value could not be created. */
+    private record Unresolved(String reason) {
+        @Override
+        public String toString() {
+            return "unresolved: " + reason;
+        }
+    }
+
+    /**
+     * creates the values of lazy and active values once per instance, so the fingerprint and the
+     * row of a key share one creation. each creation runs on a worker thread and is abandoned when
+     * it exceeds its time budget, a slow value factory cannot stall the EDT for the whole run.
+     */
+    private static final class ValueResolver {
+        private static final ExecutorService RESOLVER =
+                Executors.newCachedThreadPool(
+                        runnable -> {
+                            var thread = new Thread(runnable, "value-resolver");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+
+        private static final int REPORTED_RESOLUTIONS = 20;
+
+        private record Resolution(String key, String type, long nanos, Object value) {}
+
+        private final Map<Object, Object> memo = new IdentityHashMap<>();
+        private final List<Resolution> resolutions = new ArrayList<>();
+        private final long budgetMillis;
+
+        /** the UIDefaults key resolutions are reported for. */
+        private String key;
+
+        /** time spent resolving since the caller last reset it. */
+        private long nanos = 0;
+
+        ValueResolver(long budgetMillis) {
+            this.budgetMillis = budgetMillis;
+        }
+
+        static boolean isDeferred(Object value) {
+            return value instanceof UIDefaults.ActiveValue || value instanceof UIDefaults.LazyValue;
+        }
+
+        /**
+         * returns the value created by value, or Unresolved if it or any lazy value it creates in
+         * turn fails, times out or leads back to a value of the chain.
+         */
+        Object resolve(Object value, UIDefaults table) {
+            var live = create(value, table);
+            var chain = Collections.newSetFromMap(new IdentityHashMap<>());
+            chain.add(value);
+            for (var next = live; isDeferred(next); next = create(next, table)) {
+                if (!chain.add(next)) {
+                    return new Unresolved("cycle through " + next.getClass().getName());
+                }
+            }
+            return live;
+        }
+
+        private Object create(Object value, UIDefaults table) {
+            if (memo.containsKey(value)) {
+                return memo.get(value);
+            }
+            long start = System.nanoTime();
+            var future =
+                    RESOLVER.submit(
+                            () ->
+                                    value instanceof UIDefaults.ActiveValue activeValue
+                                            ? activeValue.createValue(table)
+                                            : ((UIDefaults.LazyValue) value).createValue(table));
+            Object live;
+            try {
+                live = future.get(budgetMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                live = new Unresolved("timed out after " + budgetMillis + " ms");
+            } catch (ExecutionException e) {
+                live = new Unresolved("failed with " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                live = new Unresolved("interrupted");
+            }
+            long nanos = System.nanoTime() - start;
+            this.nanos += nanos;
+            if (live instanceof Unresolved unresolved) {
+                LOG.log(Level.ERROR, key + ": " + unresolved);
+            }
+            memo.put(value, live);
+            resolutions.add(new Resolution(key, value.getClass().getName(), nanos, live));
+            return live;
+        }
+
+        void report(Appendable html) throws IOException {
+            html.append(
+                    """
+                    <table><caption id="resolutions">Slowest value resolutions</caption>
+                    <thead><tr><th>Key</th><th>Value</th><th>Time</th><th>Result</th></tr></thead>
+                    <tbody>
+                    """);
+            var slowest =
+                    resolutions.stream()
+                            .sorted(Comparator.comparingLong(Resolution::nanos).reversed())
+                            .limit(REPORTED_RESOLUTIONS)
+                            .toList();
+            for (var resolution : slowest) {
+                html.append(
+                        "<tr><td><code>%s</code></td><td>%s</td><td>%.3f ms</td><td>%s</td></tr>\n"
+                                .formatted(
+                                        resolution.key(),
+                                        resolution.type(),
+                                        resolution.nanos() / 1e6,
+                                        resolution.value() instanceof Unresolved unresolved
+                                                ? "<mark>" + unresolved + "</mark>"
+                                                : resolution.value() == null
+                                                        ? "null"
+                                                        : resolution.value().getClass().getName()));
+            }
+            html.append("</tbody></table>");
+        }
+    }
+
+    /**
+     * renders the value and preview cells of a row. implementations registered for ServiceLoader
+     * in META-INF/services/UIDefaultsBrowser$Renderer are asked before the built-in ones, so value
+     * types of custom LookAndFeels get previews too. this class is in the unnamed package, so
+     * providers have to be too, and they are only found when the browser runs from classes or
+     * the jar of --train-cds: from source its classes live in a loader the class path cannot see.
+     */
+    public interface Renderer {
+        boolean accepts(Class<?> type);
+
+        /** how metrics.json groups the keys rendered by this renderer. */
+        default String name() {
+            return getClass().getSimpleName();
+        }
+
+        void render(Context context, Appendable html, Object value) throws Exception;
+
+        /**
+         * values with equal cache keys render equal markup, so the browser paints the first one
+         * and reuses its markup and previews for the others. null, the default, renders every
+         * value.
+         */
+        default Object cacheKey(Object value) {
+            return null;
+        }
+    }
+
+    /** paints a preview at its full size, g2 may be scaled or translated. */
+    public interface PreviewPainter {
+        /** returns true if nothing could be painted. */
+        boolean paint(Graphics2D g2) throws Exception;
+    }
+
+    /** writes markup that many rows share, they refer to it instead of repeating it. */
+    public interface Fragment {
+        void write(Appendable html) throws Exception;
+    }
+
+    /** what a Renderer may use while it renders a row. */
+    public interface Context {
+        /** the table lazy and active values are created with. */
+        UIDefaults defaults();
+
+        /** a cleared TYPE_INT_ARGB surface, only valid until the row is finished. */
+        BufferedImage surface(int width, int height);
+
+        /** stores the preview and returns the markup referring to it. */
+        String saveImage(BufferedImage img, boolean skipPaint) throws Exception;
+
+        /**
+         * the value created by a lazy or active value, memoized per instance and bounded in time.
+         * values that cannot be created come back as a placeholder that renders its reason.
+         */
+        Object resolve(Object value);
+
+        /** renders a nested row, used for the values created by lazy and active values. */
+        void row(Appendable html, String key, Object value) throws Exception;
+
+        /** previews with more pixels are painted scaled down, see boundedPreview. */
+        default long pixelBudget() {
+            return DEFAULT_PIXEL_BUDGET;
+        }
+
+        /**
+         * writes a width * height preview larger than the pixel budget at full size and returns
+         * its location, or null if full size previews were not asked for.
+         */
+        default String saveFullSize(int width, int height, PreviewPainter painter)
+                throws Exception {
+            return null;
+        }
+
+        /**
+         * writes a fragment of value, such as a large InputMap, once into a page of its own next
+         * to the previews and returns the name of that page, or null if the fragment is to be
+         * inlined into the row.
+         */
+        default String saveFragment(String kind, Object value, Fragment fragment)
+                throws Exception {
+            return null;
+        }
+
+        /** renders the value cells of a row, the browser reuses them for equal cache keys. */
+        default void render(Renderer renderer, Appendable html, Object value) throws Exception {
+            renderer.render(this, html, value);
+        }
+    }
+
+    private final class RowContext implements Context {
+        private final Path base;
+        private final UIDefaults table;
+
+        RowContext(Path base, UIDefaults table) {
+            this.base = base;
+            this.table = table;
+        }
+
+        @Override
+        public UIDefaults defaults() {
+            return table;
+        }
+
+        @Override
+        public BufferedImage surface(int width, int height) {
+            return surfaces.acquire(width, height);
+        }
+
+        @Override
+        public String saveImage(BufferedImage img, boolean skipPaint) throws Exception {
+            return UIDefaultsBrowser.this.saveImage(base, img, skipPaint);
+        }
+
+        @Override
+        public Object resolve(Object value) {
+            return resolver.resolve(value, table);
+        }
+
+        @Override
+        public void row(Appendable html, String key, Object value) throws Exception {
+            UIDefaultsBrowser.row(this, html, key, value);
+        }
+
+        @Override
+        public long pixelBudget() {
+            return options.pixelBudget;
+        }
+
+        @Override
+        public String saveFullSize(int width, int height, PreviewPainter painter)
+                throws Exception {
+            if (!options.fullSize) {
+                return null;
+            }
+            // named after the thumbnail just saved, which may be shared by an atlas sheet
+            var thumbnail = rowPreviews.get(rowPreviews.size() - 1).digest();
+            var name = "full_%s_%dx%d.png".formatted(thumbnail.substring(0, 16), width, height);
+            if (fullSizeWritten.add(name)) {
+                writeStrips(base.resolve("images").resolve(name), width, height, painter);
+            }
+            rowImages.add(name);
+            return "images/" + name;
+        }
+
+        @Override
+        public String saveFragment(String kind, Object value, Fragment fragment)
+                throws Exception {
+            var key = new Identity(value);
+            var files = fragmentFiles.get(key);
+            if (files != null) {
+                rowImages.addAll(files);
+                return files.get(files.size() - 1);
+            }
+            // the pages of its parents are written, and added to rowImages, while it is written
+            int images = rowImages.size();
+            var markup = new StringBuilder();
+            fragment.write(markup);
+            var name = "%s_%s.html".formatted(kind, digest(markup.toString()).substring(0, 16));
+            if (fragmentsWritten.add(name)) {
+                Files.writeString(
+                        base.resolve("images").resolve(name),
+                        FRAGMENT_PAGE.formatted(STYLE, kind, markup),
+                        StandardCharsets.UTF_8);
+            }
+            rowImages.add(name);
+            fragmentFiles.put(key, List.copyOf(rowImages.subList(images, rowImages.size())));
+            return name;
+        }
+
+        @Override
+        public void render(Renderer renderer, Appendable html, Object value) throws Exception {
+            var cacheKey = renderer.cacheKey(value);
+            if (cacheKey == null) {
+                renderer.render(this, html, value);
+                return;
+            }
+            var cached = renderCache.get(cacheKey);
+            if (cached != null) {
+                renderCacheHits++;
+                html.append(cached.markup());
+                rowImages.addAll(cached.images());
+                rowPreviews.addAll(cached.previews());
+                return;
+            }
+            int images = rowImages.size();
+            int previews = rowPreviews.size();
+            var buffer = new StringBuilder();
+            renderer.render(this, buffer, value);
+            renderCache.put(
+                    cacheKey,
+                    new RenderedValue(
+                            buffer.toString(),
+                            List.copyOf(rowImages.subList(images, rowImages.size())),
+                            List.copyOf(rowPreviews.subList(previews, rowPreviews.size()))));
+            html.append(buffer);
+        }
+    }
+
+    /** the value cells of a rendered row and the previews they refer to. */
+    private record RenderedValue(String markup, List<String> images, List<Preview> previews) {}
+
+    /** by Renderer.cacheKey, so repeated values are painted and encoded once per run. */
+    private final Map<Object, RenderedValue> renderCache = new HashMap<>();
+
+    private int renderCacheHits = 0;
+
+    /** JVM uptime when the first row of this run was rendered, -1 if none was. */
+    private long firstRowMillis = -1;
+
+    /**
+     * what firstRowMillis counts from, JVM start for the first run of a JVM, the start of the run
+     * for the LookAndFeels after it, which found the JVM warm.
+     */
+    private long startMillis;
+
+    private static boolean jvmWarm;
+
+    /** full size previews written by this run. */
+    private final Set<String> fullSizeWritten = new HashSet<>();
+
+    /** fragments written by this run, named after the digest of their markup. */
+    private final Set<String> fragmentsWritten = new HashSet<>();
+
+    /** by value identity, the page of a fragment last, the pages of its parents before it. */
+    private final Map<Identity, List<String>> fragmentFiles = new HashMap<>();
+
+    /** InputMaps and arrays with fewer entries, and no parent, are inlined into their row. */
+    private static final int FRAGMENT_MIN_ENTRIES = 8;
+
+    /**
+     * paints a preview of width * height in horizontal strips straight into a PNG, so no more
+     * than the pixel budget is ever held in memory, however large the preview.
+     */
+    private void writeStrips(Path path, int width, int height, PreviewPainter painter)
+            throws Exception {
+        int stripHeight = (int) Math.max(1, Math.min(height, options.pixelBudget / width));
+        var strip = new BufferedImage(width, stripHeight, BufferedImage.TYPE_INT_ARGB);
+        var pixels = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+        var row = new byte[1 + width * 4];
+        try (var png =
+                new PngStream(
+                        Files.newOutputStream(path),
+                        width,
+                        height,
+                        8,
+                        PngStream.TRUECOLOR_ALPHA,
+                        options.pngLevel)) {
+            for (int y = 0; y < height; y += stripHeight) {
+                Arrays.fill(pixels, 0);
+                var g2 = strip.createGraphics();
+                g2.translate(0, -y);
+                painter.paint(g2);
+                g2.dispose();
+                for (int r = 0, rows = Math.min(stripHeight, height - y); r < rows; r++) {
+                    for (int x = 0, i = 1; x < width; x++) {
+                        int argb = pixels[r * width + x];
+                        row[i++] = (byte) (argb >> 16);
+                        row[i++] = (byte) (argb >> 8);
+                        row[i++] = (byte) argb;
+                        row[i++] = (byte) (argb >>> 24);
+                    }
+                    png.writeRow(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * encodes previews as PNG. most icons and painters use a handful of colors, those with at
+     * most 256 are encoded as indexed color with the smallest bit depth that holds the palette,
+     * translucent entries first so the tRNS chunk stays short. for small images with many colors
+     * the palette outweighs what it saves, those go to the ImageIO truecolor writer like the
+     * others.
+     */
+    static final class PngEncoder {
+        static final int DEFAULT_LEVEL = 6;
+
+        /**
+         * indexed color pays off when each palette entry covers this many pixels on average. on
+         * the Metal and Nimbus previews it picks the smaller encoding for all but 0.5% of bytes.
+         */
+        private static final int PIXELS_PER_COLOR = 128;
+
+        private PngEncoder() {}
+
+        /** returns how img was written, "indexed1" to "indexed8" or "truecolor". */
+        static String encode(BufferedImage img, OutputStream out, int level) throws IOException {
+            int width = img.getWidth();
+            int height = img.getHeight();
+            // stops counting colors as soon as there are too many for the pixels
+            long colors = Math.min(Palette.MAX_COLORS, (long) width * height / PIXELS_PER_COLOR);
+            if (colors == 0) {
+                writeTruecolor(img, out, level);
+                return "truecolor";
+            }
+            var argb = img.getRGB(0, 0, width, height, null, 0, width);
+            var palette = new Palette((int) colors);
+            for (int i = 0; i < argb.length; i++) {
+                // fully transparent pixels all become 0, their color does not show
+                if (argb[i] >>> 24 == 0) {
+                    argb[i] = 0;
+                }
+                if (!palette.add(argb[i])) {
+                    writeTruecolor(img, out, level);
+                    return "truecolor";
+                }
+            }
+            return "indexed" + writeIndexed(out, argb, palette, width, height, level);
+        }
+
+        /** returns the bit depth used. */
+        private static int writeIndexed(
+                OutputStream out, int[] argb, Palette colors, int width, int height, int level)
+                throws IOException {
+            var palette = colors.sort();
+            int translucent = 0;
+            for (int i = 0; i < palette.length; i++) {
+                if (palette[i] >>> 24 != 0xff) {
+                    translucent = i + 1;
+                }
+            }
+            int bits = 8;
+            while (bits > 1 && palette.length <= 1 << (bits / 2)) {
+                bits /= 2;
+            }
+            var png = new PngStream(out, width, height, bits, PngStream.INDEXED, level);
+            var plte = new byte[palette.length * 3];
+            for (int i = 0; i < palette.length; i++) {
+                plte[i * 3] = (byte) (palette[i] >> 16);
+                plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+                plte[i * 3 + 2] = (byte) palette[i];
+            }
+            png.chunk("PLTE", plte, plte.length);
+            if (translucent > 0) {
+                var trns = new byte[translucent];
+                for (int i = 0; i < translucent; i++) {
+                    trns[i] = (byte) (palette[i] >>> 24);
+                }
+                png.chunk("tRNS", trns, trns.length);
+            }
+            var row = new byte[1 + (width * bits + 7) / 8];
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(row, (byte) 0);
+                for (int x = 0; x < width; x++) {
+                    int bit = x * bits;
+                    row[1 + bit / 8] |= colors.index(argb[y * width + x]) << (8 - bits - bit % 8);
+                }
+                png.writeRow(row);
+            }
+            png.close();
+            return bits;
+        }
+
+        /**
+         * up to 256 distinct colors and their palette index, in an open addressing table of ints,
+         * so pixels are not boxed on their way through it.
+         */
+        private static final class Palette {
+            static final int MAX_COLORS = 256;
+            private static final int SLOTS = 1024;
+
+            private final int limit;
+
+            private final int[] colors = new int[SLOTS];
+
+            /** index + 1 of the color in the same slot, 0 for a free slot. */
+            private final int[] indices = new int[SLOTS];
+
+            private int size;
+
+            Palette(int limit) {
+                this.limit = limit;
+            }
+
+            /** returns false if argb would be one color more than the limit, at most 256. */
+            boolean add(int argb) {
+                int slot = slot(argb);
+                if (indices[slot] != 0) {
+                    return true;
+                }
+                if (size == limit) {
+                    return false;
+                }
+                colors[slot] = argb;
+                indices[slot] = ++size;
+                return true;
+            }
+
+            int index(int argb) {
+                return indices[slot(argb)] - 1;
+            }
+
+            /** renumbers the colors, translucent ones first, and returns them in that order. */
+            int[] sort() {
+                var keys = new long[size];
+                for (int slot = 0, i = 0; slot < SLOTS; slot++) {
+                    if (indices[slot] != 0) {
+                        int c = colors[slot];
+                        // opaque last, then by signed value
+                        keys[i++] =
+                                (c >>> 24 == 0xff ? 1L << 32 : 0)
+                                        | ((c ^ 0x80000000) & 0xffffffffL);
+                    }
+                }
+                Arrays.sort(keys);
+                var sorted = new int[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = (int) keys[i] ^ 0x80000000;
+                    indices[slot(sorted[i])] = i + 1;
+                }
+                return sorted;
+            }
+
+            private int slot(int argb) {
+                int slot = (argb * 0x9e3779b1) >>> 22;
+                while (indices[slot] != 0 && colors[slot] != argb) {
+                    slot = (slot + 1) & (SLOTS - 1);
+                }
+                return slot;
+            }
+        }
+
+        private static void writeTruecolor(BufferedImage img, OutputStream out, int level)
+                throws IOException {
+            var writer = ImageIO.getImageWritersByFormatName("png").next();
+            try (var stream = new MemoryCacheImageOutputStream(out)) {
+                var param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                // the JDK writer maps quality q to deflate level 9 * (1 - q)
+                param.setCompressionQuality(1f - level / 9f);
+                writer.setOutput(stream);
+                writer.write(null, new IIOImage(img, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * a PNG written row by row, the compressed data is flushed in 64 KiB chunks. chunks other
+     * than the image data, like PLTE, go before the first row.
+     */
+    private static final class PngStream implements Closeable {
+        static final int INDEXED = 3;
+        static final int TRUECOLOR_ALPHA = 6;
+
+        private static final int CHUNK_SIZE = 1 << 16;
+
+        private final OutputStream out;
+        private final ByteArrayOutputStream idat = new ByteArrayOutputStream(CHUNK_SIZE);
+        private final Deflater compressor;
+        private final DeflaterOutputStream deflater;
+
+        PngStream(OutputStream out, int width, int height, int bitDepth, int colorType, int level)
+                throws IOException {
+            this.out = new BufferedOutputStream(out);
+            this.out.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+            var header =
+                    ByteBuffer.allocate(13)
+                            .putInt(width)
+                            .putInt(height)
+                            .put((byte) bitDepth)
+                            .put((byte) colorType)
+                            .put((byte) 0) // deflate
+                            .put((byte) 0) // adaptive filtering
+                            .put((byte) 0); // no interlace
+            chunk("IHDR", header.array(), 13);
+            this.compressor = new Deflater(level);
+            this.deflater =
+                    new DeflaterOutputStream(
+                            new OutputStream() {
+                                @Override
+                                public void write(int b) throws IOException {
+                                    write(new byte[] {(byte) b}, 0, 1);
+                                }
+
+                                @Override
+                                public void write(byte[] b, int off, int len) throws IOException {
+                                    idat.write(b, off, len);
+                                    if (idat.size() >= CHUNK_SIZE) {
+                                        flushData();
+                                    }
+                                }
+                            },
+                            compressor,
+                            CHUNK_SIZE);
+        }
+
+        /** row starts with its filter type, 0 for none, followed by the packed samples. */
+        void writeRow(byte[] row) throws IOException {
+            deflater.write(row);
+        }
+
+        private void flushData() throws IOException {
+            if (idat.size() > 0) {
+                chunk("IDAT", idat.toByteArray(), idat.size());
+                idat.reset();
+            }
+        }
+
+        void chunk(String type, byte[] data, int length) throws IOException {
+            var typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+            var crc = new CRC32();
+            crc.update(typeBytes);
+            crc.update(data, 0, length);
+            out.write(ByteBuffer.allocate(4).putInt(length).array());
+            out.write(typeBytes);
+            out.write(data, 0, length);
+            out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                deflater.finish();
+                flushData();
+                chunk("IEND", new byte[0], 0);
+            } finally {
+                compressor.end();
+                out.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface TypedRenderer<T> {
+        void render(Context context, Appendable html, T value) throws Exception;
+    }
+
+    private static <T> Renderer renderer(Class<T> type, TypedRenderer<T> renderer) {
+        return renderer(type, renderer, null);
+    }
+
+    /** cacheKey, if not null, maps a value to its Renderer.cacheKey. */
+    private static <T> Renderer renderer(
+            Class<T> type, TypedRenderer<T> renderer, Function<T, Object> cacheKey) {
+        return new Renderer() {
+            @Override
+            public boolean accepts(Class<?> c) {
+                return type.isAssignableFrom(c);
+            }
+
+            @Override
+            public String name() {
+                return type.getSimpleName();
+            }
+
+            @Override
+            public void render(Context context, Appendable html, Object value) throws Exception {
+                renderer.render(context, html, type.cast(value));
+            }
+
+            @Override
+            public Object cacheKey(Object value) {
+                return cacheKey == null ? null : cacheKey.apply(type.cast(value));
+            }
+        };
+    }
+
+    /** a cache key equal only to itself, for values whose equals does not cover their looks. */
+    private record Identity(Object value) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity other && other.value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+
+    private static final Renderer GENERIC_RENDERER =
+            renderer(Object.class, UIDefaultsBrowser::generic);
+
+    private static final Renderer ARRAY_RENDERER =
+            new Renderer() {
+                @Override
+                public boolean accepts(Class<?> type) {
+                    return type.isArray();
+                }
+
+                @Override
+                public String name() {
+                    return "Array";
+                }
+
+                @Override
+                public void render(Context context, Appendable html, Object value)
+                        throws Exception {
+                    array(context, html, value);
+                }
+
+                @Override
+                public Object cacheKey(Object value) {
+                    return new Identity(value);
+                }
+            };
+
+    /** service provided renderers first, then the built-in ones in order of precedence. */
+    private static final List<Renderer> RENDERERS = loadRenderers();
+
+    /** the first of RENDERERS accepting a class, resolved once per class. */
+    private static final ClassValue<Renderer> RENDERER_BY_CLASS =
+            new ClassValue<>() {
+                @Override
+                protected Renderer computeValue(Class<?> type) {
+                    for (var renderer : RENDERERS) {
+                        if (renderer.accepts(type)) {
+                            return renderer;
+                        }
+                    }
+                    return GENERIC_RENDERER;
+                }
+            };
+
+    private static List<Renderer> loadRenderers() {
+        var renderers = new ArrayList<Renderer>();
+        try {
+            for (var renderer : ServiceLoader.load(Renderer.class)) {
+                LOG.log(Level.INFO, "renderer " + renderer.getClass().getName());
+                renderers.add(renderer);
+            }
+        } catch (ServiceConfigurationError e) {
+            LOG.log(Level.ERROR, "skip renderer services: " + e);
+        }
+        renderers.add(renderer(UIDefaults.ActiveValue.class, UIDefaultsBrowser::activeValue));
+        renderers.add(renderer(UIDefaults.LazyValue.class, UIDefaultsBrowser::lazyValue));
+        renderers.add(renderer(Color.class, UIDefaultsBrowser::color));
+        // the markup shows the class name, so equal values of different classes differ. insets
+        // and dimensions are mutable and keyed by their fields, stateful borders, painters and
+        // icons by identity
+        renderers.add(
+                renderer(Font.class, UIDefaultsBrowser::font, f -> List.of(f.getClass(), f)));
+        renderers.add(
+                renderer(
+                        Dimension.class,
+                        UIDefaultsBrowser::dimension,
+                        d -> List.of(d.getClass(), d.width, d.height)));
+        renderers.add(
+                renderer(
+                        Insets.class,
+                        UIDefaultsBrowser::insets,
+                        i -> List.of(i.getClass(), i.top, i.left, i.bottom, i.right)));
+        renderers.add(renderer(Border.class, UIDefaultsBrowser::border, Identity::new));
+        renderers.add(renderer(Painter.class, UIDefaultsBrowser::painter, Identity::new));
+        renderers.add(renderer(InputMap.class, UIDefaultsBrowser::inputMap, Identity::new));
+        renderers.add(renderer(Icon.class, UIDefaultsBrowser::icon, Identity::new));
+        renderers.add(renderer(Number.class, UIDefaultsBrowser::plain));
+        renderers.add(renderer(Boolean.class, UIDefaultsBrowser::plain));
+        renderers.add(ARRAY_RENDERER);
+        return List.copyOf(renderers);
+    }
+
+    static final class Options {
+        String output;
+        boolean allLookAndFeels;
+        boolean atlas;
+        long resolveTimeoutMillis = 2000;
+        boolean bench;
+        boolean snapshot;
+        boolean paged;
+        int servePort = -1;
+        boolean bundle;
+        int pngLevel = 6;
+        int shards;
+        int shardIndex;
+        int shardCount;
+        long pixelBudget = DEFAULT_PIXEL_BUDGET;
+        boolean fullSize;
+        Path diffBefore;
+        Path diffAfter;
+        boolean headless;
+        Path trainCds;
+
+        /** a shard reuses the rows of its coordinator's previous run from there. */
+        Path previous;
+
+        /** installed names or class names, in the order they are rendered. */
+        final List<String> lookAndFeels = new ArrayList<>();
+
+        /** the options a shard has to render with, forwarded to its JVM. */
+        final List<String> renderArgs = new ArrayList<>();
+
+        private static final List<String> RENDER_OPTIONS =
+                List.of("--resolve-timeout=", "--pixel-budget=", "--full-size", "--png-level=");
+
+        /** returns null if args does not match the usage. */
+        static Options parse(String... args) {
+            var options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                var arg = args[i];
+                if (RENDER_OPTIONS.stream().anyMatch(arg::startsWith)) {
+                    options.renderArgs.add(arg);
+                }
+                if (arg.equals("--diff")) {
+                    if (i + 2 >= args.length) {
+                        return null;
+                    }
+                    options.diffBefore = Paths.get(args[++i]);
+                    options.diffAfter = Paths.get(args[++i]);
+                } else if (arg.equals("--all")) {
+                    options.allLookAndFeels = true;
+                } else if (arg.startsWith("--laf=")) {
+                    options.lookAndFeels.addAll(
+                            Arrays.asList(arg.substring("--laf=".length()).split(",")));
+                } else if (arg.startsWith("--output=") && options.output == null) {
+                    options.output = arg.substring("--output=".length());
+                } else if (arg.startsWith("--previous=")) {
+                    options.previous = Paths.get(arg.substring("--previous=".length()));
+                } else if (arg.equals("--headless")) {
+                    options.headless = true;
+                } else if (arg.startsWith("--train-cds=")) {
+                    options.trainCds = Paths.get(arg.substring("--train-cds=".length()));
+                } else if (arg.equals("--atlas")) {
+                    options.atlas = true;
+                } else if (arg.equals("--bench")) {
+                    options.bench = true;
+                } else if (arg.equals("--serve")) {
+                    options.servePort = 8080;
+                } else if (arg.startsWith("--serve=")) {
+                    try {
+                        options.servePort = Integer.parseInt(arg.substring("--serve=".length()));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                } else if (arg.equals("--shards")) {
+                    options.shards = Runtime.getRuntime().availableProcessors();
+                } else if (arg.startsWith("--shards=") || arg.startsWith("--shard=")) {
+                    try {
+                        if (arg.startsWith("--shards=")) {
+                            options.shards = Integer.parseInt(arg.substring("--shards=".length()));
+                        } else {
+                            var shard = arg.substring("--shard=".length()).split("/");
+                            options.shardIndex = Integer.parseInt(shard[0]);
+                            options.shardCount = Integer.parseInt(shard[1]);
+                        }
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        return null;
+                    }
+                    if (options.shards < 0
+                            || options.shardIndex < 0
+                            || options.shardIndex >= Math.max(1, options.shardCount)) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--png-level=")) {
+                    try {
+                        options.pngLevel = Integer.parseInt(arg.substring("--png-level=".length()));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (options.pngLevel < 0 || options.pngLevel > 9) {
+                        return null;
+                    }
+                } else if (arg.equals("--bundle")) {
+                    options.bundle = true;
+                } else if (arg.equals("--full-size")) {
+                    options.fullSize = true;
+                } else if (arg.startsWith("--pixel-budget=")) {
+                    try {
+                        options.pixelBudget =
+                                Long.parseLong(arg.substring("--pixel-budget=".length()));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    if (options.pixelBudget <= 0) {
+                        return null;
+                    }
+                } else if (arg.equals("--paged")) {
+                    options.paged = true;
+                } else if (arg.equals("--snapshot")) {
+                    options.snapshot = true;
+                } else if (arg.startsWith("--resolve-timeout=")) {
+                    try {
+                        options.resolveTimeoutMillis =
+                                Long.parseLong(arg.substring("--resolve-timeout=".length()));
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                } else if (arg.startsWith("--") || options.output != null) {
+                    return null;
+                } else {
+                    options.output = arg;
+                }
+            }
+            if (options.atlas && (options.shards > 0 || options.shardCount > 0)) {
+                // sprite positions are not known until the sheets are packed in one process
+                return null;
+            }
+            if (options.lookAndFeels.contains("")
+                    || (options.allLookAndFeels && !options.lookAndFeels.isEmpty())
+                    || (options.servePort >= 0 && options.lookAndFeels.size() > 1)) {
+                return null;
+            }
+            return options.output == null
+                            && !options.bench
+                            && options.servePort < 0
+                            && options.trainCds == null
+                    ? null
+                    : options;
+        }
+    }
+
+    /**
+     * writes UIDefaults.snapshot, the resolved defaults in a compact form for other tools. the
+     * file is a gzip compressed stream of big endian DataOutput primitives, strings are an int
+     * byte count followed by UTF-8:
+     *
+     * <pre>
+     * int MAGIC, int VERSION, string lookAndFeel, string javaVersion
+     * { byte RECORD, string section, string key, value,
+     *   int previews, { string ref, string digest } }
+     * byte END
+     * </pre>
+     *
+     * a value is a tag byte followed by its fields, see writeValue. records come in table order,
+     * that is sorted by key within a section, so two snapshots can be compared in one pass.
+     */
+    static final class SnapshotWriter implements Closeable {
+        static final int MAGIC = 0x55494453; // "UIDS"
+        static final int VERSION = 1;
+
+        static final byte END = 0;
+        static final byte RECORD = 1;
+
+        static final byte NULL = 0;
+        static final byte BOOLEAN = 1;
+        static final byte INT = 2;
+        static final byte LONG = 3;
+        static final byte FLOAT = 4;
+        static final byte DOUBLE = 5;
+        static final byte STRING = 6;
+        static final byte COLOR = 7;
+        static final byte FONT = 8;
+        static final byte INSETS = 9;
+        static final byte DIMENSION = 10;
+        static final byte INPUT_MAP = 11;
+        static final byte ARRAY = 12;
+        static final byte BORDER = 13;
+        static final byte PAINTER = 14;
+        static final byte ICON = 15;
+        static final byte LAZY = 16;
+        static final byte ACTIVE = 17;
+        static final byte OTHER = 18;
+        static final byte UNRESOLVED = 19;
+
+        private static final Pattern LAMBDA_SUFFIX =
+                Pattern.compile("\\$\\$Lambda(\\$\\d+)?(/0x\\p{XDigit}+)?$|/0x\\p{XDigit}+$");
+
+        private final DataOutputStream out;
+        private final UnaryOperator<Object> resolve;
+
+        SnapshotWriter(Path file, String lookAndFeel, UnaryOperator<Object> resolve)
+                throws IOException {
+            this.out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(
+                                    new GZIPOutputStream(Files.newOutputStream(file), 1 << 16)));
+            this.resolve = resolve;
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(lookAndFeel);
+            writeString(System.getProperty("java.version"));
+        }
+
+        void write(String section, String key, Object value, List<Preview> previews)
+                throws IOException {
+            out.writeByte(RECORD);
+            writeString(section);
+            writeString(key);
+            writeValue(value);
+            out.writeInt(previews.size());
+            for (var preview : previews) {
+                writeString(preview.ref());
+                writeString(Objects.toString(preview.digest(), ""));
+            }
+        }
+
+        /** same precedence as the renderers, so a value is recorded as what its row shows. */
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (ValueResolver.isDeferred(value)) {
+                out.writeByte(value instanceof UIDefaults.ActiveValue ? ACTIVE : LAZY);
+                writeString(typeName(value));
+                writeValue(resolve.apply(value));
+            } else if (value instanceof Unresolved unresolved) {
+                out.writeByte(UNRESOLVED);
+                writeString(unresolved.reason());
+            } else if (value instanceof Boolean b) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean(b);
+            } else if (value instanceof Integer i) {
+                out.writeByte(INT);
+                out.writeInt(i);
+            } else if (value instanceof Long l) {
+                out.writeByte(LONG);
+                out.writeLong(l);
+            } else if (value instanceof Float f) {
+                out.writeByte(FLOAT);
+                out.writeFloat(f);
+            } else if (value instanceof Double d) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(d);
+            } else if (value instanceof String s) {
+                out.writeByte(STRING);
+                writeString(s);
+            } else if (value instanceof Color color) {
+                out.writeByte(COLOR);
+                writeString(typeName(value));
+                out.writeInt(color.getRGB());
+            } else if (value instanceof Font font) {
+                out.writeByte(FONT);
+                writeString(typeName(value));
+                writeString(font.getFamily());
+                writeString(font.getName());
+                out.writeInt(font.getStyle());
+                out.writeFloat(font.getSize2D());
+            } else if (value instanceof Insets insets) {
+                out.writeByte(INSETS);
+                writeString(typeName(value));
+                writeInsets(insets);
+            } else if (value instanceof Dimension dim) {
+                out.writeByte(DIMENSION);
+                writeString(typeName(value));
+                out.writeInt(dim.width);
+                out.writeInt(dim.height);
+            } else if (value instanceof Border border) {
+                out.writeByte(BORDER);
+                writeString(typeName(value));
+                Insets insets;
+                try {
+                    insets = border.getBorderInsets(null);
+                } catch (RuntimeException e) {
+                    insets = new Insets(0, 0, 0, 0);
+                }
+                writeInsets(insets);
+            } else if (value instanceof Painter) {
+                out.writeByte(PAINTER);
+                writeString(typeName(value));
+            } else if (value instanceof InputMap inputMap) {
+                out.writeByte(INPUT_MAP);
+                writeString(typeName(value));
+                var keys = inputMap.allKeys();
+                if (keys == null) {
+                    keys = new KeyStroke[0];
+                }
+                // allKeys follows hash order, sorting keeps equal maps byte for byte equal
+                Arrays.sort(keys, Comparator.comparing(KeyStroke::toString));
+                out.writeInt(keys.length);
+                for (var keyStroke : keys) {
+                    writeString(keyStroke.toString());
+                    writeString(Objects.toString(inputMap.get(keyStroke)));
+                }
+            } else if (value instanceof Icon icon) {
+                out.writeByte(ICON);
+                writeString(typeName(value));
+                out.writeInt(icon.getIconWidth());
+                out.writeInt(icon.getIconHeight());
+            } else if (value.getClass().isArray()) {
+                out.writeByte(ARRAY);
+                writeString(value.getClass().getComponentType().getName());
+                int length = Array.getLength(value);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    writeValue(Array.get(value, i));
+                }
+            } else {
+                // identity hashes differ from run to run and would make every snapshot differ
+                out.writeByte(OTHER);
+                writeString(typeName(value));
+                writeString(IDENTITY_HASH.matcher(Objects.toString(value)).replaceAll("@"));
+            }
+        }
+
+        /**
+         * lambda classes carry a counter and a hidden class address that change from JVM to JVM,
+         * so only the class that declares the lambda is kept.
+         */
+        private static String typeName(Object value) {
+            return LAMBDA_SUFFIX.matcher(value.getClass().getName()).replaceAll("");
+        }
+
+        private void writeInsets(Insets insets) throws IOException {
+            out.writeInt(insets.top);
+            out.writeInt(insets.left);
+            out.writeInt(insets.bottom);
+            out.writeInt(insets.right);
+        }
+
+        private void writeString(String s) throws IOException {
+            var bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(END);
+            out.close();
+        }
+    }
+
+    /**
+     * reads a snapshot record by record. numbers, booleans and strings come back as boxed values,
+     * everything else as a Value of its tag, recorded class and fields.
+     */
+    static final class SnapshotReader implements Closeable {
+        /** a snapshot value that has no plain java counterpart. */
+        record Value(String kind, String type, List<Object> fields) {
+            @Override
+            public String toString() {
+                return kind + " " + type + " " + fields;
+            }
+        }
+
+        record Entry(String section, String key, Object value, List<Preview> previews) {}
+
+        private final DataInputStream in;
+        final String lookAndFeel;
+        final String javaVersion;
+
+        SnapshotReader(Path file) throws IOException {
+            this.in =
+                    new DataInputStream(
+                            new BufferedInputStream(
+                                    new GZIPInputStream(Files.newInputStream(file), 1 << 16)));
+            if (in.readInt() != SnapshotWriter.MAGIC) {
+                in.close();
+                throw new IOException(file + " is not a UIDefaults snapshot");
+            }
+            int version = in.readInt();
+            if (version != SnapshotWriter.VERSION) {
+                in.close();
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            this.lookAndFeel = readString();
+            this.javaVersion = readString();
+        }
+
+        /** returns null after the last record. */
+        Entry next() throws IOException {
+            if (in.readByte() == SnapshotWriter.END) {
+                return null;
+            }
+            var section = readString();
+            var key = readString();
+            var value = readValue();
+            int count = in.readInt();
+            var previews = new ArrayList<Preview>(count);
+            for (int i = 0; i < count; i++) {
+                var ref = readString();
+                var digest = readString();
+                previews.add(new Preview(ref, digest.isEmpty() ? null : digest));
+            }
+            return new Entry(section, key, value, previews);
+        }
+
+        private Object readValue() throws IOException {
+            byte tag = in.readByte();
+            return switch (tag) {
+                case SnapshotWriter.NULL -> null;
+                case SnapshotWriter.BOOLEAN -> in.readBoolean();
+                case SnapshotWriter.INT -> in.readInt();
+                case SnapshotWriter.LONG -> in.readLong();
+                case SnapshotWriter.FLOAT -> in.readFloat();
+                case SnapshotWriter.DOUBLE -> in.readDouble();
+                case SnapshotWriter.STRING -> readString();
+                case SnapshotWriter.COLOR -> new Value(
+                        "Color", readString(), List.of(String.format("%08x", in.readInt())));
+                case SnapshotWriter.FONT -> new Value(
+                        "Font",
+                        readString(),
+                        List.of(readString(), readString(), in.readInt(), in.readFloat()));
+                case SnapshotWriter.INSETS -> new Value("Insets", readString(), readInsets());
+                case SnapshotWriter.DIMENSION -> new Value(
+                        "Dimension", readString(), List.of(in.readInt(), in.readInt()));
+                case SnapshotWriter.BORDER -> new Value("Border", readString(), readInsets());
+                case SnapshotWriter.PAINTER -> new Value("Painter", readString(), List.of());
+                case SnapshotWriter.ICON -> new Value(
+                        "Icon", readString(), List.of(in.readInt(), in.readInt()));
+                case SnapshotWriter.INPUT_MAP -> {
+                    var type = readString();
+                    int count = in.readInt();
+                    var bindings = new ArrayList<Object>(count);
+                    for (int i = 0; i < count; i++) {
+                        bindings.add(readString() + "=" + readString());
+                    }
+                    yield new Value("InputMap", type, bindings);
+                }
+                case SnapshotWriter.ARRAY -> {
+                    var type = readString();
+                    int length = in.readInt();
+                    var elements = new ArrayList<Object>(length);
+                    for (int i = 0; i < length; i++) {
+                        elements.add(readValue());
+                    }
+                    yield new Value("Array", type, elements);
+                }
+                case SnapshotWriter.LAZY, SnapshotWriter.ACTIVE -> {
+                    var type = readString();
+                    var live = readValue();
+                    yield new Value(
+                            tag == SnapshotWriter.LAZY ? "LazyValue" : "ActiveValue",
+                            type,
+                            Collections.singletonList(live));
+                }
+                case SnapshotWriter.OTHER -> new Value(
+                        "Object", readString(), List.of(readString()));
+                case SnapshotWriter.UNRESOLVED -> new Value(
+                        "Unresolved", "", List.of(readString()));
+                default -> throw new IOException("unknown snapshot tag " + tag);
+            };
+        }
+
+        private List<Object> readInsets() throws IOException {
+            return List.of(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+        }
+
+        private String readString() throws IOException {
+            var bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * compares two snapshots, two LookAndFeels or one LookAndFeel on two JDKs, and writes the
+     * added, removed and changed keys to changes.html. both snapshots are in table order, so they
+     * are merged in a single pass without loading either into memory. previews are compared by
+     * their pixel digests, nothing is painted again.
+     */
+    static final class SnapshotDiff {
+        private final Path before;
+        private final Path after;
+        private final Path output;
+        private final StringBuilder added = new StringBuilder();
+        private final StringBuilder removed = new StringBuilder();
+        private final StringBuilder changed = new StringBuilder();
+        private int addedCount;
+        private int removedCount;
+        private int changedCount;
+        private int unchangedCount;
+
+        private SnapshotDiff(Path before, Path after, Path output) {
+            this.before = before;
+            this.after = after;
+            this.output = output;
+        }
+
+        static void run(Path before, Path after, Path output) {
+            try {
+                Files.createDirectories(output);
+                new SnapshotDiff(snapshotFile(before), snapshotFile(after), output).write();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        private static Path snapshotFile(Path path) {
+            return Files.isDirectory(path) ? path.resolve("UIDefaults.snapshot") : path;
+        }
+
+        private void write() throws IOException {
+            String beforeTitle;
+            String afterTitle;
+            try (var left = new SnapshotReader(before);
+                    var right = new SnapshotReader(after)) {
+                beforeTitle = left.lookAndFeel + " on " + left.javaVersion;
+                afterTitle = right.lookAndFeel + " on " + right.javaVersion;
+                var a = left.next();
+                var b = right.next();
+                String section = a != null ? a.section() : b != null ? b.section() : null;
+                while (a != null || b != null) {
+                    int order;
+                    if (a == null) {
+                        order = 1;
+                    } else if (b == null) {
+                        order = -1;
+                    } else if (!a.section().equals(b.section())) {
+                        // both follow the same section order, the side still in the current
+                        // section has rows the other side lacks
+                        order = a.section().equals(section) ? -1 : 1;
+                    } else {
+                        order = a.key().compareTo(b.key());
+                    }
+                    if (order < 0) {
+                        section = a.section();
+                        removedCount++;
+                        entry(removed, a, before);
+                        a = left.next();
+                    } else if (order > 0) {
+                        section = b.section();
+                        addedCount++;
+                        entry(added, b, after);
+                        b = right.next();
+                    } else {
+                        section = a.section();
+                        if (Objects.equals(a.value(), b.value())
+                                && digests(a).equals(digests(b))) {
+                            unchangedCount++;
+                        } else {
+                            changedCount++;
+                            changed.append("<tr><td><code>%s</code></td>".formatted(a.key()));
+                            cells(changed, a, before);
+                            cells(changed, b, after);
+                            changed.append("</tr>\n");
+                        }
+                        a = left.next();
+                        b = right.next();
+                    }
+                }
+            }
+
+            var report = output.resolve("changes.html");
+            try (var html = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                html.append(pageHead("UIDefaults browser - changes"));
+                html.append(
+                        """
+<body>
+<hgroup id="title">
+<h1>UIDefaults browser</h1>
+<p>changes from <code>%s</code> to <code>%s</code>.</p>
+</hgroup>
+<header>
+<ul><li><a href="#Changed">Changed</a> (%d)<li><a href="#Added">Added</a> (%d)
+<li><a href="#Removed">Removed</a> (%d)</ul>
+<p>%d keys unchanged.</p>
+</header>
+<main>
+<table><caption id="Changed">Changed</caption>
+<thead><tr><th>Key</th><th>Before</th><th>Preview</th><th>After</th><th>Preview</th></tr></thead>
+<tbody>
+"""
+                                .formatted(
+                                        beforeTitle,
+                                        afterTitle,
+                                        changedCount,
+                                        addedCount,
+                                        removedCount,
+                                        unchangedCount));
+                html.append(changed).append("</tbody></table>\n\n");
+                html.append(
+                        """
+<table><caption id="Added">Added</caption>
+<thead><tr><th>Key</th><th>Value</th><th>Preview</th></tr></thead>
+<tbody>
+""");
+                html.append(added).append("</tbody></table>\n\n");
+                html.append(
+                        """
+<table><caption id="Removed">Removed</caption>
+<thead><tr><th>Key</th><th>Value</th><th>Preview</th></tr></thead>
+<tbody>
+""");
+                html.append(removed).append("</tbody></table>\n</main>\n</body>\n</html>\n");
+            }
+            System.out.println(
+                    "Diff: %d changed, %d added, %d removed, %d unchanged, see %s"
+                            .formatted(
+                                    changedCount,
+                                    addedCount,
+                                    removedCount,
+                                    unchangedCount,
+                                    report));
+        }
+
+        /** previews may be renamed between runs, only their pixels count. */
+        private static List<String> digests(SnapshotReader.Entry entry) {
+            var digests = new ArrayList<String>();
+            for (var preview : entry.previews()) {
+                digests.add(preview.digest() != null ? preview.digest() : preview.ref());
+            }
+            return digests;
+        }
+
+        private void entry(StringBuilder html, SnapshotReader.Entry entry, Path snapshot) {
+            html.append("<tr><td><code>%s</code></td>".formatted(entry.key()));
+            cells(html, entry, snapshot);
+            html.append("</tr>\n");
+        }
+
+        private void cells(StringBuilder html, SnapshotReader.Entry entry, Path snapshot) {
+            html.append(
+                    "<td class=\"generic_to_string\">%s</td><td>"
+                            .formatted(Objects.toString(entry.value())));
+            var swatch = swatch(entry.value());
+            if (swatch != null) {
+                html.append(
+                        "<span class=\"sprite\" style=\"width: 25px; height: 25px; "
+                                + "background-color: #%s;\"></span>"
+                                        .formatted(swatch));
+            }
+            for (var preview : entry.previews()) {
+                html.append(preview(preview, snapshot));
+            }
+            html.append("</td>");
+        }
+
+        /** the rgba of a color, also behind lazy and active values, or null. */
+        private static String swatch(Object value) {
+            while (value instanceof SnapshotReader.Value v) {
+                if (v.kind().equals("Color")) {
+                    var argb = (String) v.fields().get(0);
+                    return argb.substring(2) + argb.substring(0, 2);
+                }
+                if (!v.kind().equals("LazyValue") && !v.kind().equals("ActiveValue")) {
+                    break;
+                }
+                value = v.fields().get(0);
+            }
+            return null;
+        }
+
+        /** links the preview where the snapshot left it, atlas sprites by their position. */
+        private String preview(Preview preview, Path snapshot) {
+            var ref = preview.ref();
+            int hash = ref.indexOf("#xywh=");
+            var file = hash < 0 ? ref : ref.substring(0, hash);
+            var src =
+                    output.toAbsolutePath()
+                            .relativize(snapshot.toAbsolutePath().resolveSibling(file))
+                            .toString()
+                            .replace('\\', '/');
+            if (hash < 0) {
+                return "<img src=\"%s\" loading=\"lazy\">".formatted(src);
+            }
+            var xywh = ref.substring(hash + "#xywh=".length()).split(",");
+            return """
+                    <span class="sprite" style="background-image: url('%s'); \
+                    width: %spx; height: %spx; background-position: -%spx -%spx;"></span>"""
+                    .formatted(src, xywh[2], xywh[3], xywh[0], xywh[1]);
+        }
+    }
+
+    /**
+     * --serve, keeps the defaults of the LookAndFeel in memory and renders a page, and the
+     * previews on it, only when a browser first asks for it. nothing is written to disk. pages
+     * and previews are kept in LRU caches, an evicted preview is painted again by rendering the
+     * page it came from. requests run on virtual threads where the JDK has them, painting always
+     * happens on the EDT.
+     */
+    static final class Server {
+        private static final int PAGE_CACHE_SIZE = 64;
+        private static final int IMAGE_CACHE_SIZE = 4096;
+        private static final String UI_CLASSES = "UI Classes";
+
+        private final Options options;
+        private final String lookAndFeel;
+        private final UIDefaults table;
+
+        /** component, see componentOf, to its rows in key order. */
+        private final Map<String, Map<String, Object>> components = new TreeMap<>();
+
+        private final ValueResolver resolver;
+        private final SurfacePool surfaces = new SurfacePool();
+
+        private final Map<String, String> pages = lru(PAGE_CACHE_SIZE);
+
+        /** pixel digest to the detached preview, replaced by its PNG once it was requested. */
+        private final Map<String, Object> images = lru(IMAGE_CACHE_SIZE);
+
+        /** pixel digest to the page that paints it. */
+        private final Map<String, String> imageOrigins =
+                Collections.synchronizedMap(new HashMap<>());
+
+        private Server(Options options) {
+            this.options = options;
+            this.lookAndFeel = UIManager.getLookAndFeel().getClass().getName();
+            this.table = UIManager.getLookAndFeelDefaults();
+            this.resolver = new ValueResolver(options.resolveTimeoutMillis);
+            for (var entry : table.entrySet()) {
+                var key = entry.getKey().toString();
+                var page = key.endsWith("UI") ? UI_CLASSES : componentOf(key);
+                components.computeIfAbsent(page, p -> new TreeMap<>()).put(key, entry.getValue());
+            }
+        }
+
+        private static <V> Map<String, V> lru(int capacity) {
+            return Collections.synchronizedMap(
+                    new LinkedHashMap<String, V>(capacity, 0.75f, true) {
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                            return size() > capacity;
+                        }
+                    });
+        }
+
+        /** runs on the EDT, so the defaults are read where Swing expects them to be. */
+        static void start(Options options) {
+            long start = System.nanoTime();
+            try {
+                var server = new Server(options);
+                var http =
+                        HttpServer.create(
+                                new InetSocketAddress(
+                                        InetAddress.getLoopbackAddress(), options.servePort),
+                                0);
+                http.createContext("/", server::handle);
+                http.setExecutor(requestExecutor());
+                http.start();
+                System.out.println(
+                        "Serving %s on http://%s:%d/ (ready in %d ms)"
+                                .formatted(
+                                        server.lookAndFeel,
+                                        http.getAddress().getHostString(),
+                                        http.getAddress().getPort(),
+                                        (System.nanoTime() - start) / 1_000_000));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /** newVirtualThreadPerTaskExecutor on JDK 21 and later, a cached pool before. */
+        private static ExecutorService requestExecutor() {
+            try {
+                return (ExecutorService)
+                        Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                LOG.log(Level.INFO, "no virtual threads, serving from a cached thread pool");
+                return Executors.newCachedThreadPool(
+                        task -> {
+                            var thread = new Thread(task, "http-request");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+            }
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try {
+                var method = exchange.getRequestMethod();
+                if (!method.equals("GET") && !method.equals("HEAD")) {
+                    send(exchange, 405, "text/plain", "method not allowed".getBytes());
+                    return;
+                }
+                var path = exchange.getRequestURI().getPath();
+                if (path.equals("/")) {
+                    send(exchange, 200, "text/html; charset=utf-8", utf8(index()));
+                } else if (path.startsWith("/page/")) {
+                    var page = page(path.substring("/page/".length()));
+                    if (page == null) {
+                        send(exchange, 404, "text/plain", "no such page".getBytes());
+                    } else {
+                        send(exchange, 200, "text/html; charset=utf-8", utf8(page));
+                    }
+                } else if (path.startsWith("/images/") && path.endsWith(".png")) {
+                    var png = image(path.substring("/images/".length(), path.length() - 4));
+                    if (png == null) {
+                        send(exchange, 404, "text/plain", "no such image".getBytes());
+                    } else {
+                        // named by their pixels, so an image never changes
+                        exchange.getResponseHeaders()
+                                .set("Cache-Control", "max-age=31536000, immutable");
+                        send(exchange, 200, "image/png", png);
+                    }
+                } else {
+                    send(exchange, 404, "text/plain", "not found".getBytes());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                send(exchange, 500, "text/plain", Objects.toString(e).getBytes());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static void send(HttpExchange exchange, int status, String type, byte[] body)
+                throws IOException {
+            exchange.getResponseHeaders().set("Content-Type", type);
+            boolean head = exchange.getRequestMethod().equals("HEAD");
+            exchange.sendResponseHeaders(status, head ? -1 : body.length);
+            if (!head) {
+                exchange.getResponseBody().write(body);
+            }
+        }
+
+        private static byte[] utf8(String s) {
+            return s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String link(String page) {
+            return "/page/"
+                    + URLEncoder.encode(page, StandardCharsets.UTF_8).replace("+", "%20");
+        }
+
+        private String index() {
+            var html = new StringBuilder();
+            html.append(pageHead("UIDefaults browser - browsing UIDefaults of " + lookAndFeel));
+            html.append(
+                    """
+<body>
+<hgroup id="title">
+<h1>UIDefaults browser</h1>
+<p>browsing UIDefaults of <code>%s</code>.</p>
+</hgroup>
+<main>
+<ul>
+"""
+                            .formatted(lookAndFeel));
+            for (var component : components.entrySet()) {
+                html.append(
+                        "<li><a href=\"%s\">%s</a> (%d)</li>\n"
+                                .formatted(
+                                        link(component.getKey()),
+                                        component.getKey(),
+                                        component.getValue().size()));
+            }
+            return html.append("</ul>\n</main>\n")
+                    .append(FOOTER)
+                    .append("\n</body>\n</html>\n")
+                    .toString();
+        }
+
+        private String page(String component) throws Exception {
+            var page = pages.get(component);
+            if (page == null && components.containsKey(component)) {
+                page = onEdt(() -> render(component));
+                pages.put(component, page);
+            }
+            return page;
+        }
+
+        private byte[] image(String digest) throws Exception {
+            var image = images.get(digest);
+            var origin = imageOrigins.get(digest);
+            if (image == null && origin != null) {
+                onEdt(() -> render(origin));
+                image = images.get(digest);
+            }
+            if (image instanceof BufferedImage img) {
+                var png = new ByteArrayOutputStream();
+                PngEncoder.encode(img, png, options.pngLevel);
+                image = png.toByteArray();
+                images.put(digest, image);
+            }
+            return (byte[]) image;
+        }
+
+        private static <T> T onEdt(Callable<T> task) throws Exception {
+            var result = new CompletableFuture<T>();
+            SwingUtilities.invokeLater(
+                    () -> {
+                        try {
+                            result.complete(task.call());
+                        } catch (Throwable t) {
+                            result.completeExceptionally(t);
+                        }
+                    });
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        /** renders the page of component on the EDT, leaving its previews in images. */
+        private String render(String component) throws Exception {
+            var html = new StringBuilder();
+            html.append(
+                    pageHead("UIDefaults browser - %s of %s".formatted(component, lookAndFeel)));
+            html.append(
+                    """
+<body>
+<hgroup id="title">
+<h1>%2$s</h1>
+<p>UIDefaults of <code>%1$s</code>, back to the <a href="/">index</a>.</p>
+</hgroup>
+<main>
+"""
+                            .formatted(lookAndFeel, component));
+            html.append(tableHead(component));
+            var context = new ServeContext(component);
+            for (var row : components.get(component).entrySet()) {
+                UIDefaultsBrowser.row(
+                        context, html, row.getKey(), row.getValue(), anchor(row.getKey()));
+                surfaces.releaseAll();
+            }
+            return html.append("</tbody></table>\n</main>\n")
+                    .append(FOOTER)
+                    .append("\n</body>\n</html>\n")
+                    .toString();
+        }
+
+        private final class ServeContext implements Context {
+            private final String component;
+
+            ServeContext(String component) {
+                this.component = component;
+            }
+
+            @Override
+            public UIDefaults defaults() {
+                return table;
+            }
+
+            @Override
+            public BufferedImage surface(int width, int height) {
+                return surfaces.acquire(width, height);
+            }
+
+            @Override
+            public long pixelBudget() {
+                return options.pixelBudget;
+            }
+
+            @Override
+            public String saveImage(BufferedImage img, boolean skipPaint) throws Exception {
+                var digest = digest(img);
+                if (!(images.get(digest) instanceof byte[])) {
+                    images.put(digest, detach(img));
+                }
+                imageOrigins.putIfAbsent(digest, component);
+                return previewMarkup(
+                        "/images/" + digest + ".png",
+                        digest,
+                        img.getWidth(),
+                        img.getHeight(),
+                        skipPaint);
+            }
+
+            @Override
+            public Object resolve(Object value) {
+                return resolver.resolve(value, table);
+            }
+
+            @Override
+            public void row(Appendable html, String key, Object value) throws Exception {
+                UIDefaultsBrowser.row(this, html, key, value);
+            }
+        }
+    }
+
+    /**
+     * a small benchmark harness for the hot paths, in the spirit of JMH but without a build to
+     * carry it: each benchmark is warmed up, then run in fixed time windows, and the average time
+     * per operation is printed with its standard deviation. runs on the EDT like the real thing.
+     */
+    private static final class Bench {
+        private static final int WARMUP_ITERATIONS = 3;
+        private static final int MEASUREMENT_ITERATIONS = 5;
+        private static final long ITERATION_NANOS = 500_000_000L;
+
+        /** results end up here, so the JIT cannot drop the measured work. */
+        static volatile Object sink;
+
+        @FunctionalInterface
+        private interface Operation {
+            void run() throws Exception;
+        }
+
+        /** hands out the samples of one kind round robin. */
+        private static final class Cycle<T> {
+            private final List<T> items;
+            private int next = 0;
+
+            Cycle(List<T> items) {
+                this.items = items;
+            }
+
+            T next() {
+                var item = items.get(next);
+                next = (next + 1) % items.size();
+                return item;
+            }
+        }
+
+        /** renders into the void: previews are only kept alive in sink. */
+        private static final class BenchContext implements Context {
+            private final UIDefaults table;
+            private final ValueResolver resolver = new ValueResolver(2000);
+            private final SurfacePool surfaces = new SurfacePool();
+
+            BenchContext(UIDefaults table) {
+                this.table = table;
+            }
+
+            @Override
+            public UIDefaults defaults() {
+                return table;
+            }
+
+            @Override
+            public BufferedImage surface(int width, int height) {
+                return surfaces.acquire(width, height);
+            }
+
+            @Override
+            public String saveImage(BufferedImage img, boolean skipPaint) {
+                sink = img;
+                return "";
+            }
+
+            @Override
+            public Object resolve(Object value) {
+                return resolver.resolve(value, table);
+            }
+
+            @Override
+            public void row(Appendable html, String key, Object value) throws Exception {
+                UIDefaultsBrowser.row(this, html, key, value);
+            }
+        }
+
+        static void run() {
+            System.out.println(
+                    "%-45s %4s %14s %12s  %s"
+                            .formatted("Benchmark", "Cnt", "Score", "Error", "Units"));
+            for (var className :
+                    List.of(
+                            UIManager.getCrossPlatformLookAndFeelClassName(),
+                            "javax.swing.plaf.nimbus.NimbusLookAndFeel")) {
+                try {
+                    UIManager.setLookAndFeel(className);
+                    bench(className.substring(className.lastIndexOf('.') + 1));
+                } catch (Exception e) {
+                    LOG.log(Level.ERROR, "skip " + className + ": " + e);
+                }
+            }
+        }
+
+        private static void bench(String laf) throws Exception {
+            var table = UIManager.getLookAndFeelDefaults();
+            var context = new BenchContext(table);
+            var values = new ArrayList<Object>();
+            for (var value : table.values()) {
+                values.add(ValueResolver.isDeferred(value) ? context.resolve(value) : value);
+            }
+            var html = new StringBuilder();
+
+            var all = new Cycle<>(values);
+            measure(laf, "rowDispatch", () -> sink = rendererOf(all.next()));
+
+            var colors = samples(values, Color.class);
+            measure(
+                    laf,
+                    "getWebColor",
+                    () -> sink = getWebColor(colors.next()) + getNegativeWebColor(colors.next()));
+            measure(laf, "getColorTuple", () -> sink = getColorTuple(colors.next()));
+
+            var previews = new ArrayList<BufferedImage>();
+            for (var type :
+                    List.of(
+                            Font.class,
+                            Border.class,
+                            Icon.class,
+                            Painter.class,
+                            Insets.class,
+                            Dimension.class)) {
+                var samples = samples(values, type);
+                if (samples == null) {
+                    continue;
+                }
+                var renderer = RENDERER_BY_CLASS.get(samples.next().getClass());
+                measure(
+                        laf,
+                        "render" + type.getSimpleName(),
+                        () -> {
+                            html.setLength(0);
+                            renderer.render(context, html, samples.next());
+                            context.surfaces.releaseAll();
+                        });
+                renderer.render(context, html, samples.next());
+                previews.add(detach((BufferedImage) sink));
+                context.surfaces.releaseAll();
+            }
 
-public class UIDefaultsBrowser {
-    private static final System.Logger LOG = System.getLogger(UIDefaultsBrowser.class.getName());
+            var images = new Cycle<>(previews);
+            measure(
+                    laf,
+                    "saveImageEncodePng",
+                    () -> {
+                        var out = new ByteArrayOutputStream();
+                        PngEncoder.encode(images.next(), out, PngEncoder.DEFAULT_LEVEL);
+                        sink = out;
+                    });
+            measure(laf, "saveImageDigest", () -> sink = digest(images.next()));
 
-    private static final int PREVIEW_LARGE_WIDTH = 512;
-    private static final int PREVIEW_LARGE_HEIGHT = PREVIEW_LARGE_WIDTH;
+            measureSingleShot(
+                    laf,
+                    "endToEnd",
+                    () -> {
+                        var dir = Files.createTempDirectory("uidefaults-bench");
+                        var options = new Options();
+                        options.output = dir.toString();
+                        var out = System.out;
+                        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                        try {
+                            sink = new UIDefaultsBrowser(options);
+                        } finally {
+                            System.setOut(out);
+                        }
+                        try (var files = Files.walk(dir)) {
+                            for (var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                                Files.delete(file);
+                            }
+                        }
+                    });
+        }
 
-    private int IMAGE_COUNT = 0;
+        @SuppressWarnings("unchecked")
+        private static <T> Cycle<T> samples(List<Object> values, Class<T> type) {
+            var samples = values.stream().filter(type::isInstance).toList();
+            return samples.isEmpty() ? null : new Cycle<>((List<T>) samples);
+        }
 
-    private static boolean isPreviewLarge(int width, int height) {
-        return width > PREVIEW_LARGE_WIDTH || PREVIEW_LARGE_HEIGHT > 512;
-    }
+        private static void measure(String laf, String name, Operation operation)
+                throws Exception {
+            for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                iterate(operation);
+            }
+            var scores = new double[MEASUREMENT_ITERATIONS];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = iterate(operation);
+            }
+            print(laf, name, scores, "ns/op");
+        }
 
-    public static final void main(String... args) {
-        if (args.length != 1) {
+        private static double iterate(Operation operation) throws Exception {
+            long operations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                operation.run();
+                operations++;
+            } while ((elapsed = System.nanoTime() - start) < ITERATION_NANOS);
+            return (double) elapsed / operations;
+        }
+
+        /** for operations that take seconds, every call is one measurement. */
+        private static void measureSingleShot(String laf, String name, Operation operation)
+                throws Exception {
+            operation.run();
+            var scores = new double[3];
+            for (int i = 0; i < scores.length; i++) {
+                long start = System.nanoTime();
+                operation.run();
+                scores[i] = (System.nanoTime() - start) / 1e6;
+            }
+            print(laf, name, scores, "ms/op");
+        }
+
+        private static void print(String laf, String name, double[] scores, String unit) {
+            var mean = Arrays.stream(scores).average().orElse(0);
+            var variance = Arrays.stream(scores).map(s -> (s - mean) * (s - mean)).sum();
+            var error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
             System.out.println(
-                    """
-                    Usage:
-                        java UIDefaultsBrowser.java [output_dir]
-                    """);
-        } else {
-            SwingUtilities.invokeLater(() -> new UIDefaultsBrowser(args[0]));
+                    "%-45s %4d %14.3f +- %9.3f  %s"
+                            .formatted(laf + "." + name, scores.length, mean, error, unit));
+        }
+    }
+
+    /**
+     * switches through the LookAndFeels in-process, every installed one or those of --laf, so the
+     * JIT, fonts and image caches warmed up by the first one are reused by the others. each one
+     * goes to its own base directory, lookAndFeels are names for setLookAndFeel.
+     */
+    private static void snapshotEach(Options options, List<String> lookAndFeels) {
+        var elapsed = new ArrayList<String>();
+        for (var name : lookAndFeels) {
+            if (!setLookAndFeel(name)) {
+                elapsed.add("%-60s skipped".formatted(name));
+                continue;
+            }
+            var className = UIManager.getLookAndFeel().getClass().getName();
+            long start = System.nanoTime();
+            new UIDefaultsBrowser(options);
+            elapsed.add(
+                    "%-60s %6d ms"
+                            .formatted(className, (System.nanoTime() - start) / 1_000_000));
+        }
+        System.out.println();
+        elapsed.forEach(System.out::println);
+    }
+
+    /** selects a LookAndFeel by its installed name, ignoring case, or by class name. */
+    private static boolean setLookAndFeel(String name) {
+        var className = name;
+        for (var info : UIManager.getInstalledLookAndFeels()) {
+            if (info.getName().equalsIgnoreCase(name)) {
+                className = info.getClassName();
+            }
+        }
+        try {
+            UIManager.setLookAndFeel(className);
+            return true;
+        } catch (Exception e) {
+            LOG.log(Level.ERROR, "skip " + name + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * --train-cds, packages this browser into a jar, so later launches neither compile the
+     * source nor scan a classes directory, and runs it once over every installed LookAndFeel
+     * with -XX:ArchiveClassesAtExit. the archive holds the classes that run loaded, Swing, AWT,
+     * ImageIO and the browser, parsed and verified, for launches with -XX:SharedArchiveFile.
+     */
+    private static final class CdsTraining {
+        static final String JAR = "uidefaults-browser.jar";
+        static final String ARCHIVE = "uidefaults-browser.jsa";
+
+        static void run(Path dir) {
+            Path work = null;
+            try {
+                Files.createDirectories(dir);
+                var jar = dir.resolve(JAR).toAbsolutePath();
+                var archive = dir.resolve(ARCHIVE).toAbsolutePath();
+                work = Files.createTempDirectory("uidefaults-training");
+                writeJar(jar, classes(work));
+                var java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                long start = System.nanoTime();
+                var log = work.resolve("training.log");
+                // the modes that load classes of their own, in one run
+                var training =
+                        new ProcessBuilder(
+                                        java,
+                                        "-XX:ArchiveClassesAtExit=" + archive,
+                                        "-jar",
+                                        jar.toString(),
+                                        "--headless",
+                                        "--all",
+                                        "--paged",
+                                        "--snapshot",
+                                        work.resolve("report").toString())
+                                .redirectErrorStream(true)
+                                .redirectOutput(log.toFile())
+                                .start();
+                if (training.waitFor() != 0 || Files.notExists(archive)) {
+                    LOG.log(Level.ERROR, "training run failed, see its output below");
+                    System.out.println(Files.readString(log));
+                    return;
+                }
+                System.out.println(
+                        """
+                        Training: %s, %d KiB, recorded in %d ms
+                        launch with:
+                            %s -XX:SharedArchiveFile=%s -jar %s --headless [options] [output_dir]"""
+                                .formatted(
+                                        archive,
+                                        Files.size(archive) / 1024,
+                                        (System.nanoTime() - start) / 1_000_000,
+                                        java,
+                                        archive,
+                                        jar));
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                if (work != null) {
+                    try (var paths = Files.walk(work)) {
+                        for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                            Files.delete(path);
+                        }
+                    } catch (IOException e) {
+                        LOG.log(Level.WARNING, "failed to remove " + work, e);
+                    }
+                }
+            }
+        }
+
+        /** the directory holding the classes of this browser, compiled first if run from source. */
+        private static Path classes(Path work) throws IOException {
+            var location = codeSource();
+            if (!location.toString().endsWith(".java")) {
+                return location;
+            }
+            var compiler = ToolProvider.getSystemJavaCompiler();
+            if (compiler == null) {
+                throw new IOException("no Java compiler to package " + location);
+            }
+            var classes = Files.createDirectories(work.resolve("classes"));
+            int status =
+                    compiler.run(
+                            null,
+                            null,
+                            null,
+                            "-encoding",
+                            "UTF-8",
+                            "-nowarn",
+                            "-d",
+                            classes.toString(),
+                            location.toString());
+            if (status != 0) {
+                throw new IOException("failed to compile " + location);
+            }
+            return classes;
+        }
+
+        /** a runnable jar with the classes of this browser, nothing else in classes. */
+        private static void writeJar(Path jar, Path classes) throws IOException {
+            if (Files.isRegularFile(classes)) {
+                // started from a jar already
+                if (!Files.isSameFile(classes, jar)) {
+                    Files.copy(classes, jar, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            }
+            var manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "UIDefaultsBrowser");
+            try (var out = new JarOutputStream(Files.newOutputStream(jar), manifest);
+                    var files = Files.newDirectoryStream(classes, "UIDefaultsBrowser*.class")) {
+                for (var file : files) {
+                    out.putNextEntry(new JarEntry(file.getFileName().toString()));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                }
+            }
         }
     }
 
-    public UIDefaultsBrowser(String output) {
+    public UIDefaultsBrowser(Options options) {
+        this.options = options;
+        this.resolver = new ValueResolver(options.resolveTimeoutMillis);
+        this.startMillis = jvmWarm ? ManagementFactory.getRuntimeMXBean().getUptime() : 0;
+        jvmWarm = true;
+        long gcCount = gcCount();
+        long gcTime = gcTime();
         var selectedLookAndFeel =
                 Objects.requireNonNull(UIManager.getLookAndFeel(), "disallow null-laf");
         var selectedLookAndFeelClassName = selectedLookAndFeel.getClass().getName();
@@ -94,172 +2841,890 @@ public class UIDefaultsBrowser {
         for (var key : uiClasses.keySet()) {
             componentDefaults.remove(key);
         }
+        if (options.shardCount > 0) {
+            // every shardCount-th key instead of a range, so components with many painters
+            // are spread over all shards
+            int position = 0;
+            for (var keys : List.of(componentDefaults.keySet(), uiClasses.keySet())) {
+                for (var it = keys.iterator(); it.hasNext(); position++) {
+                    it.next();
+                    if (position % options.shardCount != options.shardIndex) {
+                        it.remove();
+                    }
+                }
+            }
+        }
 
         // write html file
-        var base = Paths.get(output, selectedLookAndFeelClassName);
+        var base = Paths.get(options.output, selectedLookAndFeelClassName);
+        FileSystem bundle = null;
         try {
-            Files.createDirectories(base);
+            if (options.bundle) {
+                // everything goes into one zip, written in one pass when the bundle is closed
+                var archive = Paths.get(options.output, selectedLookAndFeelClassName + ".zip");
+                Files.createDirectories(archive.toAbsolutePath().getParent());
+                bundle = FileSystems.newFileSystem(archive, Map.of("create", "true"));
+                base = bundle.getPath("/");
+            }
+            Files.createDirectories(base.resolve("images"));
         } catch (IOException e) {
             e.printStackTrace();
         }
 
         var htmlFile = base.resolve("UIDefaults.html");
-        System.out.println("Outputing to " + htmlFile.toAbsolutePath() + "\n");
+        System.out.println(
+                "Outputing to "
+                        + (bundle == null ? htmlFile.toAbsolutePath() : htmlFile.toUri())
+                        + "\n");
+
+        var manifestFile = base.resolve("manifest.tsv");
+        var manifestTemp = base.resolve("manifest.tsv.tmp");
+        // atlas rows point into sprite sheets, so the flag keeps a plain run from reusing them
+        var manifestHeader =
+                "# UIDefaultsBrowser manifest %s %s %s %d%s%s"
+                        .formatted(
+                                MANIFEST_VERSION,
+                                selectedLookAndFeelClassName,
+                                System.getProperty("java.version"),
+                                options.pixelBudget,
+                                options.fullSize ? " full-size" : "",
+                                options.atlas ? " atlas" : "");
+        previousBase = options.previous != null ? options.previous : base;
+        if (!options.atlas) {
+            // atlas sheets are packed from scratch, so rows of the previous run cannot be reused
+            readManifest(previousBase, previousBase.resolve("manifest.tsv"), manifestHeader);
+        }
+        if (options.shards > 0) {
+            sharded = renderShards(base, selectedLookAndFeelClassName);
+        }
 
         var titleComponents = "Components";
         var titleUIClasses = "UI Classes";
-        var stringWriter = new StringWriter(200);
-        try (PrintWriter html = new PrintWriter(stringWriter)) {
-            html.println(
+        try (var html = Files.newBufferedWriter(htmlFile, StandardCharsets.UTF_8);
+                var manifest = Files.newBufferedWriter(manifestTemp, StandardCharsets.UTF_8);
+                var snapshot =
+                        options.snapshot
+                                ? new SnapshotWriter(
+                                        base.resolve("UIDefaults.snapshot"),
+                                        selectedLookAndFeelClassName,
+                                        value -> resolver.resolve(value, lookAndFeelDefaults))
+                                : null) {
+            manifest.append(manifestHeader).append('\n');
+            html.append(
+                    pageHead(
+                            "UIDefaults browser - browsing UIDefaults of "
+                                    + selectedLookAndFeelClassName));
+            html.append(
                     """
-<!DOCTYPE html>
-<html lang="en-US">
-<head>
-<style>
-.generic_to_string {
-    word-break: break-word;
-}
-.no-break-space {
-    white-space: pre;
-}
-</style>
-<meta charset="utf-8">
-<meta name="viewport" content="width=device-width">
-<title>UIDefaults browser - browsing UIDefaults of %1$s</title>
-</head>
 <body>
 <hgroup id="title">
 <h1>UIDefaults browser</h1>
-<p>browsing UIDefaults of <code>%1$s</code>.</p>
+<p>browsing UIDefaults of <code>%s</code>.</p>
 </hgroup>
 
 <header>
 <figure>
 <figcaption>Table of contents</figcaption>
 
-%2$s
+"""
+                            .formatted(selectedLookAndFeelClassName));
+            tableOfContent(titleComponents, titleUIClasses, html);
+            html.append(
+                    """
+
 
 </figure>
+%s
+"""
+                            .formatted(SEARCH));
+            html.append(
+                    """
+
+</header>
+<main>
+
+""");
+            if (options.paged) {
+                pages(
+                        titleComponents,
+                        componentDefaults,
+                        html,
+                        manifest,
+                        snapshot,
+                        base,
+                        lookAndFeelDefaults);
+            } else {
+                table(
+                        titleComponents,
+                        componentDefaults,
+                        html,
+                        manifest,
+                        snapshot,
+                        base,
+                        lookAndFeelDefaults);
+            }
+            html.append("\n\n");
+            table(titleUIClasses, uiClasses, html, manifest, snapshot, base, lookAndFeelDefaults);
+            html.append("\n\n");
+            resolver.report(html);
+            html.append(
+                    """
+
+
+</main>
+%s
+</body>
+</html>
+"""
+                            .formatted(FOOTER));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        try {
+            if (atlasSheet != null) {
+                writeImage(base.resolve("images").resolve(atlasSheetName), cropSheet(), null);
+                System.out.println(
+                        "Atlas: %d previews packed into %d sheets"
+                                .formatted(spriteIndex.size(), atlasSheets));
+            }
+            awaitImages();
+            long bytesSaved = 0;
+            for (var share : imageShares.entrySet()) {
+                bytesSaved += Files.size(share.getKey()) * share.getValue();
+            }
+            System.out.println(
+                    "Images: %d encoded, %d deduplicated (%d bytes saved)"
+                            .formatted(imageEncodes, imageDedupHits, bytesSaved));
+            int removed = writeImageDigests(base);
+            Files.move(manifestTemp, manifestFile, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println(
+                    "Rows: %d reused, %d rendered, %d values from the render cache, %d stale"
+                                    .formatted(rowsReused, rowsRendered, renderCacheHits, removed)
+                            + " images removed");
+            if (firstRowMillis >= 0) {
+                System.out.println(
+                        "First row: %d ms after the %s started"
+                                .formatted(
+                                        firstRowMillis - startMillis,
+                                        startMillis == 0 ? "JVM" : "run"));
+            }
+            System.out.println(
+                    "Surfaces: %.1f%% pool hits, GC: %d collections, %d ms"
+                            .formatted(
+                                    surfaces.hitRate() * 100,
+                                    gcCount() - gcCount,
+                                    gcTime() - gcTime));
+            writeMetrics(base.resolve("metrics.json"), selectedLookAndFeelClassName);
+            if (options.shardCount > 0) {
+                writeShardMetrics(base.resolve("metrics.tsv"));
+            }
+            writeSearchIndex(base.resolve("search.js"), titleComponents);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (bundle != null) {
+            try {
+                bundle.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * --shards, renders the keys in child JVMs, each headless with its own EDT, and takes their
+     * rows into previousManifest, so table() only stitches them together. previews are moved
+     * into images and renamed, equal ones across shards become one file. returns false, and the
+     * rows are rendered here, if a shard failed.
+     */
+    private boolean renderShards(Path base, String lookAndFeel) {
+        Path work = null;
+        try {
+            work = Files.createTempDirectory("uidefaults-shards");
+            long start = System.nanoTime();
+            var children = new ArrayList<Process>();
+            for (int i = 0; i < options.shards; i++) {
+                var command = new ArrayList<>(childJvm(lookAndFeel));
+                command.add("--shard=" + i + "/" + options.shards);
+                if (!previousManifest.isEmpty()
+                        && base.getFileSystem() == FileSystems.getDefault()) {
+                    // the shards reuse the rows of the previous run like this process would,
+                    // rows of a bundle are inside a zip they cannot open while it is
+                    command.add("--previous=" + base.toAbsolutePath());
+                }
+                command.addAll(options.renderArgs);
+                command.add(work.resolve(Integer.toString(i)).toString());
+                children.add(
+                        new ProcessBuilder(command)
+                                .redirectErrorStream(true)
+                                .redirectOutput(work.resolve(i + ".log").toFile())
+                                .start());
+            }
+            boolean failed = false;
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i).waitFor() != 0) {
+                    LOG.log(Level.ERROR, "shard " + i + " failed, see its output below");
+                    System.out.println(Files.readString(work.resolve(i + ".log")));
+                    failed = true;
+                }
+            }
+            if (failed) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                importShard(base, work.resolve(Integer.toString(i)).resolve(lookAndFeel));
+            }
+            System.out.println(
+                    "Shards: %d rendered in %d ms"
+                            .formatted(options.shards, (System.nanoTime() - start) / 1_000_000));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (work != null) {
+                try (var paths = Files.walk(work)) {
+                    for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                } catch (IOException e) {
+                    LOG.log(Level.WARNING, "failed to remove " + work, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * the command line of a JVM running this browser the way this one was started, from source
+     * or from classes, with its system properties and the selected LookAndFeel.
+     */
+    private static List<String> childJvm(String lookAndFeel) {
+        var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (var arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if ((arg.startsWith("-D") && !arg.startsWith("-Dswing.defaultlaf="))
+                    || arg.startsWith("-XX:SharedArchiveFile=")) {
+                command.add(arg);
+            }
+        }
+        command.add("-Djava.awt.headless=true");
+        command.add("-Dswing.defaultlaf=" + lookAndFeel);
+        var location = codeSource();
+        if (location.toString().endsWith(".java")) {
+            command.add(location.toString());
+        } else {
+            command.addAll(List.of("-cp", location.toString(), "UIDefaultsBrowser"));
+        }
+        return command;
+    }
+
+    /** the source file, classes directory or jar this browser was started from. */
+    private static Path codeSource() {
+        try {
+            return Paths.get(
+                    UIDefaultsBrowser.class
+                            .getProtectionDomain()
+                            .getCodeSource()
+                            .getLocation()
+                            .toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void importShard(Path base, Path shard) throws IOException {
+        var images = base.resolve("images");
+        var renames = new HashMap<String, String>();
+        var shardImages = shard.resolve("images");
+        for (var line : Files.readAllLines(shardImages.resolve("digests.tsv"))) {
+            var fields = line.split("\t");
+            var path = imageIndex.get(fields[1]);
+            if (path == null) {
+                path = images.resolve("img_" + (IMAGE_COUNT++) + ".png");
+                Files.move(shardImages.resolve(fields[0]), path);
+                imageIndex.put(fields[1], path);
+                imageDigests.put(path.getFileName().toString(), fields[1]);
+            }
+            renames.put(fields[0], path.getFileName().toString());
+        }
+        try (var files = Files.newDirectoryStream(shardImages, "{full_*.png,*.html}")) {
+            // named after their thumbnail and size, or their markup, already
+            for (var file : files) {
+                Files.move(
+                        file,
+                        images.resolve(file.getFileName().toString()),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        var imageName = Pattern.compile("img_\\d+\\.png");
+        try (var reader =
+                Files.newBufferedReader(shard.resolve("manifest.tsv"), StandardCharsets.UTF_8)) {
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var fields = line.split("\t", -1);
+                var names = new ArrayList<String>();
+                for (var name : fields[2].isEmpty() ? new String[0] : fields[2].split(",")) {
+                    names.add(renames.getOrDefault(name, name));
+                }
+                var row =
+                        imageName
+                                .matcher(unescape(fields[3]))
+                                .replaceAll(m -> renames.getOrDefault(m.group(), m.group()));
+                previousManifest.put(
+                        unescape(fields[0]),
+                        new ManifestEntry(unescape(fields[1]), List.copyOf(names), row));
+            }
+        }
+        for (var line : Files.readAllLines(shard.resolve("metrics.tsv"), StandardCharsets.UTF_8)) {
+            var fields = line.split("\t", -1);
+            var values = Arrays.copyOfRange(fields, 1, fields.length);
+            if (fields[0].equals("key")) {
+                var metrics = KeyMetrics.fromTsv(values);
+                shardMetrics.put(metrics.key, metrics);
+            } else {
+                var image = ImageMetrics.fromTsv(values);
+                imageMetrics.add(
+                        new ImageMetrics(
+                                renames.getOrDefault(image.name(), image.name()),
+                                image.key(),
+                                image.format(),
+                                image.width(),
+                                image.height(),
+                                image.bytes(),
+                                image.nanos()));
+            }
+        }
+    }
+
+    /** the key and image metrics of a shard, one per line, for its coordinator to merge. */
+    private void writeShardMetrics(Path file) throws IOException {
+        try (var tsv = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (var keyMetrics : metrics) {
+                tsv.append("key\t").append(keyMetrics.toTsv()).append('\n');
+            }
+            synchronized (imageMetrics) {
+                for (var image : imageMetrics) {
+                    tsv.append("image\t").append(image.toTsv()).append('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * loads the rows of the previous run if it used the same LookAndFeel and JDK, and seeds
+     * imageIndex with the images that are still on disk, so unchanged previews are not encoded
+     * again and new images never reuse their names.
+     */
+    private void readManifest(Path base, Path manifestFile, String header) {
+        var images = base.resolve("images");
+        var digestFile = images.resolve("digests.tsv");
+        try {
+            if (Files.exists(digestFile)) {
+                for (var line : Files.readAllLines(digestFile, StandardCharsets.UTF_8)) {
+                    var fields = line.split("\t");
+                    var path = images.resolve(fields[0]);
+                    if (Files.exists(path)) {
+                        imageIndex.put(fields[1], path);
+                        imageDigests.put(fields[0], fields[1]);
+                        var number = fields[0].replaceAll("\\D", "");
+                        IMAGE_COUNT = Math.max(IMAGE_COUNT, Integer.parseInt(number) + 1);
+                    }
+                }
+            }
+            if (Files.exists(manifestFile)) {
+                try (var reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+                    if (!header.equals(reader.readLine())) {
+                        return;
+                    }
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        var fields = line.split("\t", -1);
+                        var names =
+                                fields[2].isEmpty()
+                                        ? List.<String>of()
+                                        : List.of(fields[2].split(","));
+                        previousManifest.put(
+                                unescape(fields[0]),
+                                new ManifestEntry(unescape(fields[1]), names, unescape(fields[3])));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.log(Level.ERROR, "ignore broken manifest in " + base + ": " + e);
+            previousManifest.clear();
+        }
+    }
+
+    /**
+     * writes the digest of every referenced image and deletes the images and fragments no row
+     * refers to.
+     */
+    private int writeImageDigests(Path base) throws IOException {
+        var images = base.resolve("images");
+        int removed = 0;
+        try (var digests =
+                Files.newBufferedWriter(images.resolve("digests.tsv"), StandardCharsets.UTF_8)) {
+            for (var entry : imageIndex.entrySet()) {
+                var name = entry.getValue().getFileName().toString();
+                if (referencedImages.contains(name)) {
+                    digests.append(name).append('\t').append(entry.getKey()).append('\n');
+                }
+            }
+        }
+        try (var files = Files.newDirectoryStream(images, "*.{png,html}")) {
+            for (var file : files) {
+                if (!referencedImages.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** returns the row of the previous run if key still has fingerprint and its images exist. */
+    private String reusableRow(Path base, String key, String fingerprint) {
+        if (fingerprint == null && !sharded) {
+            return null;
+        }
+        var entry = previousManifest.get(key);
+        if (entry == null || (fingerprint != null && !fingerprint.equals(entry.fingerprint()))) {
+            return null;
+        }
+        for (var name : entry.images()) {
+            if (Files.notExists(base.resolve("images").resolve(name))) {
+                return null;
+            }
+        }
+        rowImages = new ArrayList<>(entry.images());
+        rowPreviews = new ArrayList<>();
+        for (var name : entry.images()) {
+            var digest = imageDigests.get(name);
+            if (digest != null) {
+                // full size previews are files of a row, but not previews of their own
+                rowPreviews.add(new Preview("images/" + name, digest));
+            }
+        }
+        return entry.row();
+    }
+
+    /**
+     * type plus the state its preview is made of. returns null when the preview depends on state
+     * that cannot be seen from outside, such as borders, painters and icons; those rows are painted
+     * again, but only encoded if their pixel digest is not in imageIndex yet.
+     */
+    private String fingerprint(Object value, UIDefaults table) {
+        try {
+            // the row shows the deferred value too, so a theme swapping its class for one that
+            // resolves to an equal value still changes the row
+            if (value instanceof UIDefaults.ActiveValue) {
+                var live = fingerprint(resolver.resolve(value, table), table);
+                return live == null
+                        ? null
+                        : "ActiveValue:" + SnapshotWriter.typeName(value) + "(" + live + ")";
+            } else if (value instanceof UIDefaults.LazyValue) {
+                var live = fingerprint(resolver.resolve(value, table), table);
+                return live == null
+                        ? null
+                        : "LazyValue:" + SnapshotWriter.typeName(value) + "(" + live + ")";
+            } else if (value == null) {
+                return "null";
+            } else if (value instanceof Unresolved
+                    || value instanceof Border
+                    || value instanceof Painter
+                    || value instanceof Icon) {
+                return null;
+            } else if (value instanceof Color color) {
+                return value.getClass().getName() + ":" + Integer.toHexString(color.getRGB());
+            } else if (value instanceof InputMap inputMap) {
+                var result = new StringBuilder(value.getClass().getName());
+                for (var map = inputMap; map != null; map = map.getParent()) {
+                    // the fragment shows the chain, not just its bindings
+                    result.append('|').append(map.getClass().getName());
+                    var keys = map.keys();
+                    if (keys != null) {
+                        for (var key : keys) {
+                            result.append(';').append(key).append('=').append(map.get(key));
+                        }
+                    }
+                }
+                return result.toString();
+            } else if (value.getClass().isArray()) {
+                var result = new StringBuilder(value.getClass().getName());
+                for (var i = 0; i < Array.getLength(value); i++) {
+                    var element = fingerprint(Array.get(value, i), table);
+                    if (element == null) {
+                        return null;
+                    }
+                    result.append(';').append(element);
+                }
+                return result.toString();
+            }
+            var s = Objects.toString(value);
+            if (IDENTITY_HASH.matcher(s).find()) {
+                return null;
+            }
+            return value.getClass().getName() + ":" + s;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String escape(String field) {
+        return field.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String field) {
+        var result = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                c = field.charAt(++i);
+                result.append(c == 't' ? '\t' : c == 'n' ? '\n' : c);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private void tableOfContent(String titleComponents, String titleUIClasses, Appendable html)
+            throws Exception {
+        html.append("<ul>")
+                .append("<li><a href=\"#" + titleComponents + "\">" + titleComponents + "</a></li>")
+                .append("<li><a href=\"#" + titleUIClasses + "\">" + titleUIClasses + "</a>")
+                .append("<li><a href=\"#resolutions\">Slowest value resolutions</a>")
+                .append("<li><a href=\"#footer\">Note</a>")
+                .append("</ul>");
+    }
+
+    private void table(
+            String caption,
+            Map<String, Object> map,
+            Appendable html,
+            Appendable manifest,
+            SnapshotWriter snapshot,
+            Path base,
+            UIDefaults table)
+            throws Exception {
+        html.append(tableHead(caption));
+        rows(caption, map, key -> html, manifest, snapshot, base, table);
+        html.append("</tbody></table>");
+    }
+
+    /** the doctype and head every page starts with, up to the body. */
+    private static String pageHead(String title) {
+        return PAGE_HEAD.formatted(STYLE, title);
+    }
+
+    private static String tableHead(String caption) {
+        return """
+                <table><caption id="%s">%s</caption>
+                <thead><tr><th>Key</th><th>Value</th><th>Preview</th></tr></thead>
+                <tbody>
+                """
+                .formatted(caption, caption);
+    }
+
+    /**
+     * renders the rows of map into one page per component, see componentOf, and links the pages
+     * from index. rows are still rendered in key order, so the manifest and the snapshot do not
+     * depend on the paging. rows go straight to their page, see PageStream.
+     */
+    private void pages(
+            String caption,
+            Map<String, Object> map,
+            Appendable index,
+            Appendable manifest,
+            SnapshotWriter snapshot,
+            Path base,
+            UIDefaults table)
+            throws Exception {
+        var laf = UIManager.getLookAndFeel().getClass().getName();
+        var counts = new TreeMap<String, Integer>();
+        try (var pages = new PageStream(base, laf)) {
+            rows(
+                    caption,
+                    map,
+                    key -> {
+                        var component = componentOf(key);
+                        boolean first = counts.merge(component, 1, Integer::sum) == 1;
+                        return pages.page(component, first);
+                    },
+                    manifest,
+                    snapshot,
+                    base,
+                    table);
+        }
+
+        index.append("<section><h2 id=\"%s\">%s</h2>\n<ul>\n".formatted(caption, caption));
+        for (var component : counts.keySet()) {
+            var file = pageName(component);
+            var path = base.resolve(file);
+            try (var html =
+                    Files.newBufferedWriter(
+                            path, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                html.append("</tbody></table>");
+                html.append(
+                        """
+
+
+</main>
+%s
+</body>
+</html>
+"""
+                                .formatted(FOOTER));
+            }
+            index.append(
+                    "<li><a href=\"%s\">%s</a> (%d)</li>\n"
+                            .formatted(file, component, counts.get(component)));
+        }
+        index.append("</ul></section>");
+    }
+
+    /**
+     * the component page rows are appended to, only one is open at a time. the keys of a
+     * component are mostly adjacent in key order, Button.font and Button[Enabled].textForeground
+     * are apart from ButtonGroup keys, so a page is reopened for append when its component comes
+     * back rather than held in memory until all rows are done.
+     */
+    private static final class PageStream implements Closeable {
+        private final Path base;
+        private final String lookAndFeel;
+        private String component;
+        private Writer html;
+
+        PageStream(Path base, String lookAndFeel) {
+            this.base = base;
+            this.lookAndFeel = lookAndFeel;
+        }
+
+        /** the page of component, started if this is its first row. */
+        Appendable page(String component, boolean first) {
+            if (component.equals(this.component)) {
+                return html;
+            }
+            try {
+                close();
+                var file = base.resolve(pageName(component));
+                if (!first) {
+                    html =
+                            Files.newBufferedWriter(
+                                    file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+                } else {
+                    html = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                    html.append(
+                            pageHead(
+                                    "UIDefaults browser - %s of %s"
+                                            .formatted(component, lookAndFeel)));
+                    html.append(
+                            """
+<body>
+<hgroup id="title">
+<h1>%2$s</h1>
+<p>UIDefaults of <code>%1$s</code>, back to the <a href="UIDefaults.html">index</a>.</p>
+</hgroup>
+<header>
+%3$s
 </header>
 <main>
+"""
+                                    .formatted(lookAndFeel, component, SEARCH));
+                    html.append(tableHead(component));
+                }
+                this.component = component;
+                return html;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-%3$s
-
-%4$s
+        @Override
+        public void close() throws IOException {
+            if (html != null) {
+                html.close();
+                html = null;
+                component = null;
+            }
+        }
+    }
 
-</main>
-<footer id="footer">
-<p>If the value is <mark>UIDefaults.ActiveValue</mark> or <mark>UIDefaults.LazyValue</mark>, they are marked.</p>
-</footer>
-</body>
-</html>
-"""
-                            .formatted(
-                                    selectedLookAndFeelClassName,
-                                    tableOfContent(
-                                            titleComponents, titleUIClasses, new StringBuilder()),
-                                    table(
-                                            titleComponents,
-                                            componentDefaults,
-                                            new StringBuilder(),
-                                            base,
-                                            lookAndFeelDefaults),
-                                    table(
-                                            titleUIClasses,
-                                            uiClasses,
-                                            new StringBuilder(),
-                                            base,
-                                            lookAndFeelDefaults)));
-
-            Files.write(
-                    htmlFile,
-                    java.util.Arrays.asList(stringWriter.getBuffer()),
-                    StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * the component a key belongs to, the part before the first '.', '[' or ':', so Button.font,
+     * Button[Enabled].backgroundPainter and Button:"Button.label" share a page. keys without any
+     * of them, mostly system colors, go to Other. a leading quote, as in "Table.editor", is
+     * skipped.
+     */
+    static String componentOf(String key) {
+        int begin = key.startsWith("\"") ? 1 : 0;
+        for (int i = begin; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '.' || c == '[' || c == ':' || c == '"') {
+                return i == begin ? "Other" : key.substring(begin, i);
+            }
         }
+        return "Other";
     }
 
-    private StringBuilder tableOfContent(
-            String titleComponents, String titleUIClasses, StringBuilder html) throws Exception {
-        return html.append("<ul>")
-                .append("<li><a href=\"#" + titleComponents + "\">" + titleComponents + "</a></li>")
-                .append("<li><a href=\"#" + titleUIClasses + "\">" + titleUIClasses + "</a>")
-                .append("<li><a href=\"#footer\">Note</a>")
-                .append("</ul>");
+    /**
+     * lower case, so the page names are as distinct on case insensitive file systems, Metal has
+     * CheckBox and Checkbox, plus the hash of the component to keep them apart.
+     */
+    private static String pageName(String component) {
+        return "UIDefaults-%s-%08x.html"
+                .formatted(
+                        component.replaceAll("[^\\w.-]", "_").toLowerCase(Locale.ROOT),
+                        component.hashCode());
     }
 
-    private StringBuilder table(
-            String caption,
+    private void rows(
+            String section,
             Map<String, Object> map,
-            StringBuilder html,
+            Function<String, Appendable> html,
+            Appendable manifest,
+            SnapshotWriter snapshot,
             Path base,
             UIDefaults table)
             throws Exception {
-        html.append(
-                """
-                <table><caption id="%s">%s</caption>
-                <thead><tr><th>Key</th><th>Value</th><th>Preview</th></tr></thead>
-                <tbody>
-                """
-                        .formatted(caption, caption));
+        var context = new RowContext(base, table);
         for (var key : map.keySet()) {
-            row(base, html, key, map.get(key), table);
+            var value = map.get(key);
+            var event = new RowEvent();
+            event.begin();
+            long start = System.nanoTime();
+            long allocated = allocatedBytes();
+            rowMetrics = new KeyMetrics(key);
+            resolver.key = key;
+            resolver.nanos = 0;
+            var fingerprint = fingerprint(value, table);
+            var fragment = reusableRow(previousBase, key, fingerprint);
+            if (fragment != null) {
+                rowsReused++;
+                rowMetrics.reused = true;
+            } else {
+                rowImages = new ArrayList<>();
+                rowPreviews = new ArrayList<>();
+                var buffer = new StringBuilder();
+                row(context, buffer, key, value, anchor(key));
+                surfaces.releaseAll();
+                fragment = buffer.toString();
+                rowsRendered++;
+            }
+            if (firstRowMillis < 0) {
+                // what compiling, class loading and AWT startup cost before any work
+                firstRowMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            }
+            var live = value;
+            while (ValueResolver.isDeferred(live)) {
+                live = resolver.resolve(live, table);
+            }
+            rowMetrics.renderer = rendererOf(live).name();
+            rowMetrics.resolveNanos = resolver.nanos;
+            rowMetrics.paintNanos =
+                    System.nanoTime() - start - resolver.nanos - rowMetrics.queueNanos;
+            rowMetrics.allocatedBytes = allocatedBytes() - allocated;
+            var shardRow = shardMetrics.get(key);
+            if (sharded && shardRow != null && rowMetrics.reused) {
+                // timed by the shard that rendered the row, the coordinator only copied it
+                rowMetrics = shardRow;
+                if (!shardRow.reused) {
+                    rowsReused--;
+                    rowsRendered++;
+                }
+            }
+            metrics.add(rowMetrics);
+            event.end();
+            if (event.shouldCommit()) {
+                event.key = key;
+                event.renderer = rowMetrics.renderer;
+                event.resolveNanos = rowMetrics.resolveNanos;
+                event.allocatedBytes = rowMetrics.allocatedBytes;
+                event.commit();
+            }
+            html.apply(key).append(fragment);
+            searchEntries.add(new SearchEntry(section, key, typeOf(live), hexOf(live)));
+            referencedImages.addAll(rowImages);
+            if (snapshot != null) {
+                snapshot.write(section, key, value, rowPreviews);
+            }
+            if (fingerprint != null || options.shardCount > 0) {
+                // a shard records every row, the coordinator takes them all
+                manifest.append(escape(key))
+                        .append('\t')
+                        .append(escape(Objects.toString(fingerprint, "")))
+                        .append('\t')
+                        .append(String.join(",", rowImages))
+                        .append('\t')
+                        .append(escape(fragment))
+                        .append('\n');
+            }
         }
-        return html.append("</tbody></table>");
     }
 
-    private void row(Path base, StringBuilder html, String key, Object value, UIDefaults table)
+    private static void row(Context context, Appendable html, String key, Object value)
             throws Exception {
-        html.append("<tr><td><code>%s</code></td>".formatted(key));
-        if (value instanceof UIDefaults.ActiveValue activeValue) {
-            var live = activeValue.createValue(table);
-            html.append(
-                    "<td><mark>%s</mark></td><td class=\"no-break-space\">&#x20;</td>"
-                            .formatted(activeValue));
-            row(base, html, activeValue.toString(), live, table);
-        } else if (value instanceof UIDefaults.LazyValue lazyValue) {
-            var live = lazyValue.createValue(table);
-            html.append(
-                    "<td><mark>%s</mark></td><td class=\"no-break-space\">&#x20;</td>"
-                            .formatted(lazyValue));
-            row(base, html, lazyValue.toString(), live, table);
-        } else if (value instanceof Color color) {
-            this.color(html, color);
-        } else if (value instanceof Font font) {
-            this.font(base, html, font);
-        } else if (value instanceof Dimension dim) {
-            this.dimension(base, html, dim);
-        } else if (value instanceof Insets insets) {
-            this.insets(base, html, insets);
-        } else if (value instanceof Border border) {
-            this.border(base, html, border);
-        } else if (value instanceof Painter painter) {
-            this.painter(base, html, painter);
-        } else if (value instanceof InputMap inputMap) {
-            this.inputMap(html, inputMap);
-        } else if (value instanceof Icon icon) {
-            this.icon(base, html, icon);
-        } else if (value instanceof Number number) {
-            var s = Objects.toString(number);
-            html.append("<td>%s</td><td class=\"no-break-space\">&#x20;</td>".formatted(s));
-        } else if (value instanceof Boolean b) {
-            var s = Objects.toString(b);
-            html.append("<td>%s</td><td class=\"no-break-space\">&#x20;</td>".formatted(s));
-        } else if (value != null && value.getClass().isArray()) {
-            this.array(html, value);
-        } else {
-            var s = Objects.toString(value);
-            html.append(
-                    """
-                    <td class="generic_to_string">%s</td><td class=\"no-break-space\">&#x20;</td>
-                    """
-                            .formatted(s));
-        }
+        row(context, html, key, value, null);
+    }
+
+    /** id, if not null, is the anchor search results link to. */
+    private static void row(
+            Context context, Appendable html, String key, Object value, String id)
+            throws Exception {
+        html.append(id == null ? "<tr>" : "<tr id=\"%s\">".formatted(id));
+        html.append("<td><code>%s</code></td>".formatted(key));
+        context.render(rendererOf(value), html, value);
         html.append("</tr>");
     }
 
-    private void color(StringBuilder html, Color color) {
+    /** a key as an id attribute, the search script finds the row by the raw key. */
+    private static String anchor(String key) {
+        return key.replace("&", "&amp;").replace("\"", "&quot;");
+    }
+
+    private static Renderer rendererOf(Object value) {
+        return value == null ? GENERIC_RENDERER : RENDERER_BY_CLASS.get(value.getClass());
+    }
+
+    private static void activeValue(
+            Context context, Appendable html, UIDefaults.ActiveValue activeValue) throws Exception {
+        var live = context.resolve(activeValue);
+        html.append(
+                "<td><mark>%s</mark></td><td class=\"no-break-space\">&#x20;</td>"
+                        .formatted(activeValue));
+        context.row(html, activeValue.toString(), live);
+    }
+
+    private static void lazyValue(Context context, Appendable html, UIDefaults.LazyValue lazyValue)
+            throws Exception {
+        var live = context.resolve(lazyValue);
+        html.append(
+                "<td><mark>%s</mark></td><td class=\"no-break-space\">&#x20;</td>"
+                        .formatted(lazyValue));
+        context.row(html, lazyValue.toString(), live);
+    }
+
+    private static void plain(Context context, Appendable html, Object value) throws IOException {
+        var s = Objects.toString(value);
+        html.append("<td>%s</td><td class=\"no-break-space\">&#x20;</td>".formatted(s));
+    }
+
+    private static void generic(Context context, Appendable html, Object value)
+            throws IOException {
+        var s = Objects.toString(value);
+        html.append(
+                """
+                <td class="generic_to_string">%s</td><td class=\"no-break-space\">&#x20;</td>
+                """
+                        .formatted(s));
+    }
+
+    private static void color(Context context, Appendable html, Color color) throws IOException {
         var webColor = getWebColor(color);
         var negativeColor = getNegativeWebColor(color);
         var colorTuple = getColorTuple(color);
@@ -272,16 +3737,13 @@ public class UIDefaultsBrowser {
     }
 
     @SuppressWarnings("unchecked")
-    private void painter(Path base, StringBuilder html, Painter painter) throws Exception {
+    private static void painter(Context context, Appendable html, Painter painter)
+            throws Exception {
         html.append("<td>%s</td>".formatted(painter.getClass().getTypeName()));
         int w = 25;
         int h = 25;
-        var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        var img = context.surface(w, h);
         var g2 = img.createGraphics();
-        var old = g2.getComposite();
-        g2.setComposite(AlphaComposite.Clear);
-        g2.fillRect(0, 0, w, h);
-        g2.setComposite(old);
         boolean skipPaint = false;
         try {
             painter.paint(g2, makeJComponent(w, h), w, h);
@@ -291,153 +3753,276 @@ public class UIDefaultsBrowser {
             html.append("<td class=\"no-break-space\">&#x20;</td>");
         }
         g2.dispose();
-        html.append("<td>%s</td>".formatted(saveImage(base, img, skipPaint)));
+        html.append("<td>%s</td>".formatted(context.saveImage(img, skipPaint)));
     }
 
-    private void font(Path base, StringBuilder html, Font font) throws Exception {
+    private static void font(Context context, Appendable html, Font font) throws Exception {
         int w = 320;
         int h = font.getSize() * 2;
-        var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        var g2 = img.createGraphics();
-        g2.addRenderingHints(Map.of(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON));
-        var old = g2.getComposite();
-        g2.setComposite(AlphaComposite.Clear);
-        var frc = g2.getFontRenderContext();
-        var layout = new TextLayout("the quick brown fox jumps over the crazy dog", font, frc);
-        float x = ((float) w) / 2.0f - layout.getAdvance() / 2.0f;
-        float y = layout.getAscent() + layout.getDescent() + layout.getLeading();
-        var bounds = layout.getBounds();
-        bounds.setRect(
-                bounds.getX() + (double) x,
-                bounds.getY() + (double) y,
-                bounds.getWidth(),
-                bounds.getHeight());
-        g2.draw(bounds);
-        g2.setComposite(old);
-        g2.setColor(Color.BLACK);
-        layout.draw(g2, x, y);
-        g2.dispose();
+        var preview =
+                boundedPreview(
+                        context,
+                        w,
+                        h,
+                        g2 -> {
+                            g2.addRenderingHints(
+                                    Map.of(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_ON));
+                            var old = g2.getComposite();
+                            g2.setComposite(AlphaComposite.Clear);
+                            var frc = g2.getFontRenderContext();
+                            var layout =
+                                    new TextLayout(
+                                            "the quick brown fox jumps over the crazy dog",
+                                            font,
+                                            frc);
+                            float x = ((float) w) / 2.0f - layout.getAdvance() / 2.0f;
+                            float y =
+                                    layout.getAscent()
+                                            + layout.getDescent()
+                                            + layout.getLeading();
+                            var bounds = layout.getBounds();
+                            bounds.setRect(
+                                    bounds.getX() + (double) x,
+                                    bounds.getY() + (double) y,
+                                    bounds.getWidth(),
+                                    bounds.getHeight());
+                            g2.draw(bounds);
+                            g2.setComposite(old);
+                            g2.setColor(Color.BLACK);
+                            layout.draw(g2, x, y);
+                            return false;
+                        });
 
-        html.append("<td>%s</td><td>%s</td>".formatted(font, saveImage(base, img, false)));
+        html.append("<td>%s</td><td>%s</td>".formatted(font, preview));
     }
 
-    private void insets(Path base, StringBuilder html, Insets insets) throws Exception {
+    private static void insets(Context context, Appendable html, Insets insets) throws Exception {
         int w = 50 + insets.left + insets.right;
         int h = 20 + insets.top + insets.bottom;
-        var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        var g2 = img.createGraphics();
-        var old = g2.getComposite();
-        g2.setComposite(AlphaComposite.Clear);
-        g2.fillRect(0, 0, w, h);
-        g2.setComposite(old);
-        g2.setColor(Color.BLACK);
-        g2.drawRect(insets.left, insets.top, 49, 19);
-        g2.setColor(Color.RED);
-        g2.drawRect(0, 0, w - 1, h - 1);
-        g2.dispose();
+        var preview =
+                boundedPreview(
+                        context,
+                        w,
+                        h,
+                        g2 -> {
+                            g2.setColor(Color.BLACK);
+                            g2.drawRect(insets.left, insets.top, 49, 19);
+                            g2.setColor(Color.RED);
+                            g2.drawRect(0, 0, w - 1, h - 1);
+                            return false;
+                        });
 
-        html.append("<td>%s</td><td>%s</td>".formatted(insets, saveImage(base, img, false)));
+        html.append("<td>%s</td><td>%s</td>".formatted(insets, preview));
     }
 
-    private void border(Path base, StringBuilder html, Border border) throws Exception {
+    private static void border(Context context, Appendable html, Border border) throws Exception {
         var insets = border.getBorderInsets(null);
         html.append("<td>%s</td>".formatted(insets));
         int w = 50 + insets.left + insets.right;
         int h = 20 + insets.top + insets.bottom;
         try {
-            var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-            var g2 = img.createGraphics();
-            var old = g2.getComposite();
-            g2.setComposite(AlphaComposite.Clear);
-            g2.fillRect(0, 0, w, h);
-            g2.setComposite(old);
-            g2.setColor(Color.RED);
-            g2.fillRect(insets.left, insets.top, 49, 19);
-            boolean skipPaint = false;
-            try {
-                // FIXME: borderの種類ごとにcomponentを渡す必要がある
-                border.paintBorder(makeJComponent(w, h), g2, 0, 0, w, h);
-            } catch (Exception e) {
-                try {
-                    var b = new JButton();
-                    b.setBorder(border);
-                    b.setPreferredSize(new Dimension(w, h));
-                    border.paintBorder(b, g2, 0, 0, w, h);
-                } catch (Exception e1) {
-                    LOG.log(Level.ERROR, e1.getMessage());
-                    g2.drawString("skip paint", 0, 0);
-                    skipPaint = true;
-                }
-            }
-            g2.dispose();
-            html.append("<td>%s</td>".formatted(saveImage(base, img, skipPaint)));
+            var preview =
+                    boundedPreview(
+                            context,
+                            w,
+                            h,
+                            g2 -> {
+                                g2.setColor(Color.RED);
+                                g2.fillRect(insets.left, insets.top, 49, 19);
+                                // FIXME: borderの種類ごとにcomponentを渡す必要がある
+                                boolean skipPaint =
+                                        !paintOnHost(
+                                                BORDER_HOSTS,
+                                                border.getClass(),
+                                                BorderHost.values(),
+                                                host ->
+                                                        border.paintBorder(
+                                                                host.create(border, w, h),
+                                                                g2,
+                                                                0,
+                                                                0,
+                                                                w,
+                                                                h));
+                                if (skipPaint) {
+                                    g2.drawString("skip paint", 0, 0);
+                                }
+                                return skipPaint;
+                            });
+            html.append("<td>%s</td>".formatted(preview));
         } catch (Exception e) {
             e.printStackTrace();
             html.append("<td class=\"no-break-space\">&#x20;</td>");
         }
     }
 
-    private void dimension(Path base, StringBuilder html, Dimension dim) throws Exception {
+    private static void dimension(Context context, Appendable html, Dimension dim)
+            throws Exception {
         html.append("<td>%s</td>".formatted(dim));
         int w = dim.width;
         int h = dim.height;
-        if (w == 0 || h == 0) {
+        if (w <= 0 || h <= 0) {
             html.append("<td class=\"no-break-space\">&#x20;</td>");
         } else {
-            var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            var preview =
+                    boundedPreview(
+                            context,
+                            w,
+                            h,
+                            g2 -> {
+                                g2.setColor(Color.RED);
+                                g2.drawRect(0, 0, w - 1, h - 1);
+                                return false;
+                            });
+            html.append("<td>%s</td>".formatted(preview));
+        }
+    }
+
+    /**
+     * paints a width * height preview, scaled down to fit the pixel budget of the context, and
+     * links the full size one if the context writes it.
+     */
+    private static String boundedPreview(
+            Context context, int width, int height, PreviewPainter painter) throws Exception {
+        long pixels = (long) width * height;
+        if (pixels <= context.pixelBudget()) {
+            var img = context.surface(width, height);
             var g2 = img.createGraphics();
-            var old = g2.getComposite();
-            g2.setComposite(AlphaComposite.Clear);
-            g2.fillRect(0, 0, w, h);
-            g2.setComposite(old);
-            g2.setColor(Color.RED);
-            g2.drawRect(0, 0, w - 1, h - 1);
+            boolean skipPaint = painter.paint(g2);
             g2.dispose();
-            html.append("<td>%s</td>".formatted(saveImage(base, img, false)));
+            return context.saveImage(img, skipPaint);
         }
+        double scale = Math.sqrt((double) context.pixelBudget() / pixels);
+        int w = Math.max(1, (int) (width * scale));
+        int h = Math.max(1, (int) (height * scale));
+        var img = context.surface(w, h);
+        var g2 = img.createGraphics();
+        // maps the last pixel onto the last pixel, so outlines keep their right and bottom edge
+        g2.scale(
+                width > 1 ? (w - 1.0) / (width - 1) : 1.0,
+                height > 1 ? (h - 1.0) / (height - 1) : 1.0);
+        boolean skipPaint = painter.paint(g2);
+        g2.dispose();
+        var markup = context.saveImage(img, skipPaint);
+        var fullSize = context.saveFullSize(width, height, painter);
+        return markup
+                + "<small>scaled to %d * %d</small>".formatted(w, h)
+                + (fullSize == null ? "" : " <a href=\"%s\">full size</a>".formatted(fullSize));
     }
 
-    private boolean printIconImpl(
+    private static boolean printIconImpl(
             Graphics2D g2, Icon icon, JComponent component, int width, int height)
             throws Exception {
-        try {
-            icon.paintIcon(component, g2, 0, 0);
-            return false;
-        } catch (Exception e) {
+        var painted =
+                paintOnHost(
+                        ICON_HOSTS,
+                        icon.getClass(),
+                        IconHost.values(),
+                        host -> {
+                            var c = host.create(icon, component, width, height);
+                            icon.paintIcon(c, g2, 0, 0);
+                        });
+        if (!painted) {
+            g2.drawString("skip paint", 0, 0);
+        }
+        return !painted;
+    }
+
+    /** components an icon is painted on, tried in this order until one does not throw. */
+    private enum IconHost {
+        PLAIN,
+        CHECK_BOX,
+        COMBO_BOX,
+        MENU_ITEM,
+        RADIO_BUTTON;
+
+        JComponent create(Icon icon, JComponent plain, int width, int height) {
+            return switch (this) {
+                case PLAIN -> plain;
+                case CHECK_BOX -> sized(new JCheckBox(icon), width, height);
+                case COMBO_BOX -> sized(new JComboBox<>(), width, height);
+                case MENU_ITEM -> new JMenuItem(icon);
+                case RADIO_BUTTON -> sized(new JRadioButton(icon), width, height);
+            };
+        }
+    }
+
+    /** components a border is painted on, tried in this order until one does not throw. */
+    private enum BorderHost {
+        PLAIN,
+        BUTTON;
+
+        JComponent create(Border border, int width, int height) {
+            return switch (this) {
+                case PLAIN -> makeJComponent(width, height);
+                case BUTTON -> {
+                    var b = new JButton();
+                    b.setBorder(border);
+                    yield sized(b, width, height);
+                }
+            };
+        }
+    }
+
+    /**
+     * the host that worked for instances of a class. the probing costs an allocated component
+     * and a thrown exception per failed host, later instances skip it. EDT only.
+     */
+    private static final Map<Class<?>, IconHost> ICON_HOSTS = new HashMap<>();
+
+    private static final Map<Class<?>, BorderHost> BORDER_HOSTS = new HashMap<>();
+
+    /** wrappers paint whatever they delegate to, so what worked for one says nothing of others. */
+    private static final Set<Class<?>> DELEGATES =
+            Set.of(IconUIResource.class, BorderUIResource.class);
+
+    @FunctionalInterface
+    private interface HostPainter<H> {
+        void paint(H host) throws Exception;
+    }
+
+    /**
+     * paints on the host cached for type, or probes the candidates in order and caches the first
+     * one that does not throw. an instance the cached host fails for probes again, but whatever
+     * it finds stays its own, the cached host keeps working for its class mates. only hosts that
+     * worked are cached, an instance no host paints says nothing of its class mates. returns
+     * false if no host could paint.
+     */
+    private static <H> boolean paintOnHost(
+            Map<Class<?>, H> hosts, Class<?> type, H[] candidates, HostPainter<H> painter) {
+        boolean delegate = DELEGATES.contains(type);
+        var host = delegate ? null : hosts.get(type);
+        if (host != null) {
             try {
-                var cb = new JCheckBox(icon);
-                cb.setPreferredSize(new Dimension(width, height));
-                icon.paintIcon(cb, g2, 0, 0);
-                return false;
-            } catch (Exception e2) {
-                try {
-                    var cb = new JComboBox();
-                    cb.setPreferredSize(new Dimension(width, height));
-                    icon.paintIcon(cb, g2, 0, 0);
-                    return false;
-                } catch (Exception e3) {
-                    try {
-                        var mi = new JMenuItem(icon);
-                        icon.paintIcon(mi, g2, 0, 0);
-                        return false;
-                    } catch (Exception e4) {
-                        try {
-                            var rb = new JRadioButton(icon);
-                            rb.setPreferredSize(new Dimension(width, height));
-                            icon.paintIcon(rb, g2, 0, 0);
-                            return false;
-                        } catch (Exception e5) {
-                        }
-                    }
+                painter.paint(host);
+                return true;
+            } catch (Exception e) {
+                // this instance needs another host than its class mates
+            }
+        }
+        Exception first = null;
+        for (var candidate : candidates) {
+            try {
+                painter.paint(candidate);
+                if (host == null && !delegate) {
+                    hosts.put(type, candidate);
+                }
+                return true;
+            } catch (Exception e) {
+                if (first == null) {
+                    first = e;
                 }
             }
-            LOG.log(Level.ERROR, e.getMessage());
-            g2.drawString("skip paint", 0, 0);
-            return true;
         }
+        LOG.log(Level.ERROR, first.getMessage());
+        return false;
+    }
+
+    private static <T extends JComponent> T sized(T component, int width, int height) {
+        component.setPreferredSize(new Dimension(width, height));
+        return component;
     }
 
-    private void icon(Path base, StringBuilder html, Icon icon) throws Exception {
+    private static void icon(Context context, Appendable html, Icon icon) throws Exception {
         int w = icon.getIconWidth();
         if (w <= 0) {
             w = 16;
@@ -450,61 +4035,124 @@ public class UIDefaultsBrowser {
             LOG.log(Level.INFO, "icon height <= 0, so changed image width to 16");
         }
 
-        var img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
-        var g2 = img.createGraphics();
-        var old = g2.getComposite();
-        g2.setComposite(AlphaComposite.Clear);
-        g2.fillRect(0, 0, w, h);
-        g2.setComposite(old);
-        boolean skipPaint = printIconImpl(g2, icon, makeJComponent(w, h), w, h);
-        g2.dispose();
+        int width = w;
+        int height = h;
+        var component = makeJComponent(w, h);
+        var preview =
+                boundedPreview(
+                        context, w, h, g2 -> printIconImpl(g2, icon, component, width, height));
 
         html.append(
                 "<td>Icon %s * %s</td><td>%s</td>"
-                        .formatted(
-                                icon.getIconWidth(),
-                                icon.getIconHeight(),
-                                saveImage(base, img, skipPaint)));
+                        .formatted(icon.getIconWidth(), icon.getIconHeight(), preview));
     }
 
-    private void inputMap(StringBuilder html, InputMap inputMap) {
-        html.append(
-                """
-                <td>
-                <details>
-                <summary>%s</summary>
-                <ul>
-                """
-                        .formatted(inputMap.getClass().getTypeName()));
-        for (var key : inputMap.allKeys()) {
-            var binding = inputMap.get(key);
-            html.append("<li><code>%s</code> : %s".formatted(key, binding));
+    /**
+     * large InputMaps, and those with a parent, are shared by many keys and written once as a
+     * fragment, loaded into the row when it is opened.
+     */
+    private static void inputMap(Context context, Appendable html, InputMap inputMap)
+            throws Exception {
+        var keys = inputMap.allKeys();
+        int size = keys == null ? 0 : keys.length;
+        var name =
+                size >= FRAGMENT_MIN_ENTRIES || inputMap.getParent() != null
+                        ? context.saveFragment(
+                                "inputmap",
+                                inputMap,
+                                fragment -> bindings(context, fragment, inputMap))
+                        : null;
+        collection(
+                html,
+                "%s, %d bindings".formatted(inputMap.getClass().getTypeName(), size),
+                name,
+                items -> bindings(context, items, inputMap));
+    }
+
+    /** the own bindings of an InputMap by key stroke, then its parent, not flattened into them. */
+    private static void bindings(Context context, Appendable html, InputMap inputMap)
+            throws Exception {
+        var keys = inputMap.keys();
+        html.append("<ul>\n");
+        if (keys != null) {
+            Arrays.sort(keys, Comparator.comparing(KeyStroke::toString));
+            for (var key : keys) {
+                html.append("<li><code>%s</code> : %s</li>".formatted(key, inputMap.get(key)));
+            }
+        }
+        html.append("</ul>\n");
+        var parent = inputMap.getParent();
+        if (parent == null) {
+            return;
+        }
+        var type = parent.getClass().getTypeName();
+        var name =
+                context.saveFragment(
+                        "inputmap", parent, fragment -> bindings(context, fragment, parent));
+        if (name != null) {
+            // next to the page of its child
+            html.append("<p>parent <a href=\"%s\">%s</a></p>\n".formatted(name, type));
+        } else {
+            html.append("<details>\n<summary>parent %s</summary>\n".formatted(type));
+            bindings(context, html, parent);
+            html.append("</details>\n");
         }
-        html.append(
-                """
-                </ul>
-                </details>
-                </td>
-                <td class=\"no-break-space\">&#x20;</td>
-                """);
     }
 
-    private void array(StringBuilder html, Object value) {
-        html.append(
-                """
-                <td>
-                <details>
-                <summary>%s</summary>
-                <ul>
-                """
-                        .formatted(value.getClass().getTypeName()));
-        for (var i = 0; i < Array.getLength(value); i++) {
-            var c = Array.get(value, i);
-            html.append("<li>").append(c).append("</li>");
+    private static void array(Context context, Appendable html, Object value) throws Exception {
+        var elements = elements(value);
+        var name =
+                elements.size() >= FRAGMENT_MIN_ENTRIES
+                        ? context.saveFragment(
+                                "array", value, fragment -> items(fragment, elements))
+                        : null;
+        collection(
+                html,
+                "%s, %d elements".formatted(value.getClass().getTypeName(), elements.size()),
+                name,
+                items -> items(items, elements));
+    }
+
+    /** the elements of an array as text, primitive arrays are read without Array.get. */
+    private static List<String> elements(Object array) {
+        if (array instanceof Object[] objects) {
+            return Arrays.stream(objects).map(String::valueOf).toList();
+        } else if (array instanceof int[] ints) {
+            return Arrays.stream(ints).mapToObj(String::valueOf).toList();
+        } else if (array instanceof long[] longs) {
+            return Arrays.stream(longs).mapToObj(String::valueOf).toList();
+        } else if (array instanceof double[] doubles) {
+            return Arrays.stream(doubles).mapToObj(String::valueOf).toList();
+        }
+        var elements = new ArrayList<String>();
+        for (int i = 0, length = Array.getLength(array); i < length; i++) {
+            elements.add(String.valueOf(Array.get(array, i)));
+        }
+        return elements;
+    }
+
+    private static void items(Appendable html, List<String> elements) throws IOException {
+        html.append("<ul>\n");
+        for (var element : elements) {
+            html.append("<li>").append(element).append("</li>");
+        }
+        html.append("</ul>\n");
+    }
+
+    /** the cells of an InputMap or array, its fragment or its items inline. */
+    private static void collection(Appendable html, String summary, String name, Fragment items)
+            throws Exception {
+        html.append("<td>\n<details>\n<summary>%s</summary>\n".formatted(summary));
+        if (name != null) {
+            html.append(
+                    "<iframe class=\"fragment\" src=\"images/%s\" title=\"%s\" loading=\"lazy\">"
+                                    .formatted(name, summary)
+                            + "</iframe>\n");
+        } else {
+            items.write(html);
         }
         html.append(
                 """
-                </ul>
                 </details>
                 </td>
                 <td class=\"no-break-space\">&#x20;</td>
@@ -512,23 +4160,67 @@ public class UIDefaultsBrowser {
     }
 
     private String saveImage(Path base, BufferedImage img, boolean skipPaint) throws Exception {
-        var path = base.resolve("images");
-        Files.createDirectories(path);
-        var name = "img_" + (IMAGE_COUNT++) + ".png";
-        path = path.resolve(name);
-        if (Files.notExists(path)) {
-            Files.createFile(path);
+        var digest = digest(img);
+        if (options.atlas
+                && img.getWidth() <= ATLAS_MAX_PREVIEW
+                && img.getHeight() <= ATLAS_MAX_PREVIEW) {
+            var sprite = spriteIndex.get(digest);
+            if (sprite != null) {
+                imageDedupHits++;
+            } else {
+                sprite = pack(base, img);
+                spriteIndex.put(digest, sprite);
+            }
+            rowImages.add(sprite.sheet());
+            rowPreviews.add(
+                    new Preview(
+                            "images/%s#xywh=%d,%d,%d,%d"
+                                    .formatted(
+                                            sprite.sheet(),
+                                            sprite.x(),
+                                            sprite.y(),
+                                            sprite.width(),
+                                            sprite.height()),
+                            digest));
+            var markup =
+                    """
+                    <span class="sprite" role="img" aria-label="%1$s" style="width: %2$dpx;\
+                    height: %3$dpx;background-image: url(images/%1$s);\
+                    background-position: -%4$dpx -%5$dpx;"></span>"""
+                            .formatted(
+                                    sprite.sheet(),
+                                    sprite.width(),
+                                    sprite.height(),
+                                    sprite.x(),
+                                    sprite.y());
+            return skipPaint ? markup + "<strong>skip paint</strong>" : markup;
+        }
+        var path = imageIndex.get(digest);
+        if (path != null) {
+            imageDedupHits++;
+            imageShares.merge(path, 1, Integer::sum);
+        } else {
+            path = base.resolve("images").resolve("img_" + (IMAGE_COUNT++) + ".png");
+            writeImage(path, detach(img), rowMetrics);
+            imageEncodes++;
+            imageIndex.put(digest, path);
+            imageDigests.put(path.getFileName().toString(), digest);
         }
-        var imgFile = path.toFile();
-        ImageIO.write(img, "png", imgFile);
+        var name = path.getFileName().toString();
+        rowImages.add(name);
+        rowPreviews.add(new Preview("images/" + name, digest));
 
-        int width = img.getWidth();
-        int height = img.getHeight();
+        // path may be in the previous run of a shard's coordinator, the name is the same there
+        return previewMarkup("images/" + name, name, img.getWidth(), img.getHeight(), skipPaint);
+    }
+
+    private static String previewMarkup(
+            String src, String name, int width, int height, boolean skipPaint) {
         if (skipPaint) {
             return """
-               <img src="%s" alt="%s"><strong>skip paint</strong>
+               <img src="%s" alt="%s" loading="lazy"><strong>skip paint</strong>
             """
-                    .formatted(base.relativize(path), name);
+                    .formatted(src, name);
         } else if (isPreviewLarge(width, height)) {
             LOG.log(
                     Level.INFO,
@@ -539,16 +4231,176 @@ public class UIDefaultsBrowser {
             return """
             <a href="%s" title="%s">show large preview</a>
             """
-                    .formatted(base.relativize(path), name);
+                    .formatted(src, name);
         } else {
             return """
-               <img src="%s" alt="%s">
+               <img src="%s" alt="%s" loading="lazy">
             """
-                    .formatted(base.relativize(path), name);
+                    .formatted(src, name);
+        }
+    }
+
+    /**
+     * places img on the current atlas sheet with a shelf packer: sprites fill a shelf from left to
+     * right, a new shelf starts below the tallest sprite, and a full sheet goes to ENCODER.
+     */
+    private Sprite pack(Path base, BufferedImage img) throws Exception {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        if (atlasSheet != null && atlasX + width > ATLAS_SHEET_SIZE) {
+            atlasX = 0;
+            atlasY += atlasShelfHeight;
+            atlasShelfHeight = 0;
+        }
+        if (atlasSheet != null && atlasY + height > ATLAS_SHEET_SIZE) {
+            writeImage(base.resolve("images").resolve(atlasSheetName), atlasSheet, null);
+            atlasSheet = null;
+        }
+        if (atlasSheet == null) {
+            atlasSheet =
+                    new BufferedImage(
+                            ATLAS_SHEET_SIZE, ATLAS_SHEET_SIZE, BufferedImage.TYPE_INT_ARGB);
+            atlasSheetName = "atlas_" + (atlasSheets++) + ".png";
+            atlasX = 0;
+            atlasY = 0;
+            atlasShelfHeight = 0;
+        }
+        var g2 = atlasSheet.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(img, atlasX, atlasY, null);
+        g2.dispose();
+        var sprite = new Sprite(atlasSheetName, atlasX, atlasY, width, height);
+        atlasX += width;
+        atlasShelfHeight = Math.max(atlasShelfHeight, height);
+        return sprite;
+    }
+
+    /** the last sheet is rarely full, so only its used shelves are written. */
+    private BufferedImage cropSheet() {
+        int height = Math.max(1, atlasY + atlasShelfHeight);
+        var cropped = new BufferedImage(ATLAS_SHEET_SIZE, height, BufferedImage.TYPE_INT_ARGB);
+        var g2 = cropped.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(atlasSheet, 0, 0, null);
+        g2.dispose();
+        return cropped;
+    }
+
+    /**
+     * hands img over to ENCODER and returns without waiting for the file. blocks while
+     * ENCODE_QUEUE_LIMIT images are in flight, so a fast EDT cannot pile up images in memory.
+     */
+    private void writeImage(Path path, BufferedImage img, KeyMetrics keyMetrics)
+            throws InterruptedException {
+        long queued = System.nanoTime();
+        encodeSlots.acquire();
+        if (keyMetrics != null) {
+            keyMetrics.queueNanos += System.nanoTime() - queued;
+        }
+        try {
+            ENCODER.execute(
+                    () -> {
+                        try {
+                            var event = new EncodeEvent();
+                            event.begin();
+                            long start = System.nanoTime();
+                            long allocated = allocatedBytes();
+                            String format;
+                            try (var out = Files.newOutputStream(path)) {
+                                format = PngEncoder.encode(img, out, options.pngLevel);
+                            }
+                            long nanos = System.nanoTime() - start;
+                            long bytes = Files.size(path);
+                            if (keyMetrics != null) {
+                                keyMetrics.addEncode(nanos, allocatedBytes() - allocated, bytes);
+                            }
+                            var name = path.getFileName().toString();
+                            imageMetrics.add(
+                                    new ImageMetrics(
+                                            name,
+                                            keyMetrics == null ? null : keyMetrics.key,
+                                            format,
+                                            img.getWidth(),
+                                            img.getHeight(),
+                                            bytes,
+                                            nanos));
+                            event.end();
+                            if (event.shouldCommit()) {
+                                event.image = name;
+                                event.key = keyMetrics == null ? null : keyMetrics.key;
+                                event.format = format;
+                                event.bytes = bytes;
+                                event.commit();
+                            }
+                        } catch (IOException e) {
+                            LOG.log(Level.ERROR, "failed to write " + path, e);
+                        } finally {
+                            encodeSlots.release();
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            encodeSlots.release();
+            throw e;
+        }
+    }
+
+    private void awaitImages() throws InterruptedException {
+        encodeSlots.acquire(ENCODE_QUEUE_LIMIT);
+        encodeSlots.release(ENCODE_QUEUE_LIMIT);
+    }
+
+    /** pooled surfaces are painted over by later rows, ENCODER gets its own copy of the pixels. */
+    private static BufferedImage detach(BufferedImage img) {
+        if (img.getRaster().getParent() == null) {
+            return img;
+        }
+        var copy = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        img.copyData(copy.getRaster());
+        return copy;
+    }
+
+    /** SHA-256 over the size and ARGB pixels, so equal renderings share one digest. */
+    private static String digest(BufferedImage img) throws Exception {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        var md = MessageDigest.getInstance("SHA-256");
+        md.update(ByteBuffer.allocate(8).putInt(width).putInt(height).array());
+        var row = ByteBuffer.allocate(width * Integer.BYTES);
+        var raster = img.getRaster();
+        if (raster.getDataBuffer() instanceof DataBufferInt buffer
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+                && img.getType() == BufferedImage.TYPE_INT_ARGB) {
+            // pooled surfaces are views into a larger raster
+            var pixels = buffer.getData();
+            int stride = sampleModel.getScanlineStride();
+            int offset =
+                    buffer.getOffset()
+                            - raster.getSampleModelTranslateY() * stride
+                            - raster.getSampleModelTranslateX();
+            for (int y = 0; y < height; y++) {
+                row.clear();
+                row.asIntBuffer().put(pixels, offset + y * stride, width);
+                md.update(row.array());
+            }
+        } else {
+            var pixels = new int[width];
+            for (int y = 0; y < height; y++) {
+                img.getRGB(0, y, width, 1, pixels, 0, width);
+                row.clear();
+                row.asIntBuffer().put(pixels);
+                md.update(row.array());
+            }
         }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** SHA-256 over the UTF-8 bytes of markup, fragments are named after it. */
+    private static String digest(String markup) throws Exception {
+        var md = MessageDigest.getInstance("SHA-256");
+        return HexFormat.of().formatHex(md.digest(markup.getBytes(StandardCharsets.UTF_8)));
     }
 
-    private String getColorTuple(Color color) {
+    private static String getColorTuple(Color color) {
         return color.getRed()
                 + ","
                 + color.getGreen()
@@ -558,11 +4410,11 @@ public class UIDefaultsBrowser {
                 + color.getAlpha();
     }
 
-    private String getWebColor(Color color) {
+    private static String getWebColor(Color color) {
         return getWebColor(color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
     }
 
-    private String getWebColor(int red, int green, int blue, int alpha) {
+    private static String getWebColor(int red, int green, int blue, int alpha) {
         var result = new StringBuilder();
 
         var num = Integer.toHexString(red);
@@ -592,7 +4444,7 @@ public class UIDefaultsBrowser {
         return result.toString();
     }
 
-    private String getNegativeWebColor(Color color) {
+    private static String getNegativeWebColor(Color color) {
         return getWebColor(
                 0xff - color.getRed(),
                 0xff - color.getGreen(),
@@ -600,7 +4452,205 @@ public class UIDefaultsBrowser {
                 color.getAlpha());
     }
 
-    private JComponent makeJComponent(int w, int h) {
+    /** the renderer and the class of the live value of a row, for the search index. */
+    private static String typeOf(Object live) {
+        var renderer = rendererOf(live).name();
+        if (live == null) {
+            return renderer;
+        }
+        // arrays as in Object[], their name is [Ljava.lang.Object;
+        var name =
+                live.getClass().isArray()
+                        ? live.getClass().getSimpleName()
+                        : live.getClass().getName();
+        name = name.substring(name.lastIndexOf('.') + 1);
+        return renderer.equals(name) ? renderer : renderer + " " + name;
+    }
+
+    private static String hexOf(Object live) {
+        return live instanceof Color color ? getWebColor(color) : null;
+    }
+
+    /**
+     * writes search.js, the rows and a trigram index over their keys, types and color codes, for
+     * the search box of the report. posting lists are ascending row ids, stored as deltas.
+     */
+    private void writeSearchIndex(Path file, String pagedSection) throws IOException {
+        var pages = new ArrayList<String>();
+        var pageIds = new HashMap<String, Integer>();
+        var grams = new TreeMap<String, List<Integer>>();
+        var rows = new StringBuilder();
+        for (int id = 0; id < searchEntries.size(); id++) {
+            var entry = searchEntries.get(id);
+            var page =
+                    options.paged && entry.section().equals(pagedSection)
+                            ? pageName(componentOf(entry.key()))
+                            : "UIDefaults.html";
+            int pageId =
+                    pageIds.computeIfAbsent(
+                            page,
+                            p -> {
+                                pages.add(p);
+                                return pages.size() - 1;
+                            });
+            rows.append(id == 0 ? "\n" : ",\n")
+                    .append("[%d,%s,%s,%s]"
+                            .formatted(
+                                    pageId,
+                                    jsonString(entry.key()),
+                                    jsonString(entry.type()),
+                                    jsonString(entry.hex())));
+            var text =
+                    (entry.key()
+                                    + " "
+                                    + entry.type()
+                                    + (entry.hex() != null ? " #" + entry.hex() : ""))
+                            .toLowerCase(Locale.ROOT);
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                var list = grams.computeIfAbsent(text.substring(i, i + 3), g -> new ArrayList<>());
+                if (list.isEmpty() || list.get(list.size() - 1) != id) {
+                    list.add(id);
+                }
+            }
+        }
+        try (var js = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            js.append("// search index of UIDefaults.html, written by UIDefaultsBrowser\n");
+            js.append("var UIDEFAULTS_SEARCH = {\n\"pages\": [");
+            js.append(pages.stream().map(p -> jsonString(p)).collect(Collectors.joining(",")));
+            js.append("],\n\"rows\": [").append(rows).append("],\n\"grams\": {");
+            var separator = "\n";
+            for (var gram : grams.entrySet()) {
+                js.append(separator).append(jsonString(gram.getKey())).append(":[");
+                int previous = 0;
+                var list = gram.getValue();
+                for (int i = 0; i < list.size(); i++) {
+                    js.append(i == 0 ? "" : ",").append(Integer.toString(list.get(i) - previous));
+                    previous = list.get(i);
+                }
+                js.append(']');
+                separator = ",\n";
+            }
+            js.append("}};\n").append(SEARCH_SCRIPT);
+        }
+    }
+
+    /**
+     * writes the per key metrics and, per renderer, the percentiles and a log2 histogram of the
+     * time the EDT spent on a key (resolve plus paint).
+     */
+    private void writeMetrics(Path file, String lookAndFeel) throws IOException {
+        var byRenderer = new TreeMap<String, List<Long>>();
+        var encodeByRenderer = new HashMap<String, Long>();
+        for (var keyMetrics : metrics) {
+            if (!keyMetrics.reused) {
+                byRenderer
+                        .computeIfAbsent(keyMetrics.renderer, k -> new ArrayList<>())
+                        .add(keyMetrics.resolveNanos + keyMetrics.paintNanos);
+                encodeByRenderer.merge(keyMetrics.renderer, keyMetrics.encodeNanos, Long::sum);
+            }
+        }
+        try (var json = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            json.append(
+                    """
+                    {
+                      "lookAndFeel": %s,
+                      "javaVersion": %s,
+                      "keys": [
+                    """
+                            .formatted(
+                                    jsonString(lookAndFeel),
+                                    jsonString(System.getProperty("java.version"))));
+            for (int i = 0; i < metrics.size(); i++) {
+                metrics.get(i).writeJson(json);
+                json.append(i + 1 < metrics.size() ? ",\n" : "\n");
+            }
+            json.append("  ],\n  \"images\": [\n");
+            synchronized (imageMetrics) {
+                imageMetrics.sort(Comparator.comparing(ImageMetrics::name));
+                for (int i = 0; i < imageMetrics.size(); i++) {
+                    json.append(imageMetrics.get(i).toJson());
+                    json.append(i + 1 < imageMetrics.size() ? ",\n" : "\n");
+                }
+            }
+            json.append("  ],\n  \"renderers\": {\n");
+            var renderers = byRenderer.entrySet().iterator();
+            while (renderers.hasNext()) {
+                var entry = renderers.next();
+                var nanos = entry.getValue().stream().sorted().toList();
+                var histogram = new TreeMap<Long, Integer>();
+                for (var n : nanos) {
+                    histogram.merge(Long.highestOneBit(Math.max(1, n)) << 1, 1, Integer::sum);
+                }
+                var buckets =
+                        histogram.entrySet().stream()
+                                .map(b -> "\"<%d\": %d".formatted(b.getKey(), b.getValue()))
+                                .collect(Collectors.joining(", "));
+                json.append(
+                        """
+                            %s: {"count": %d, "totalNanos": %d, "p50Nanos": %d, \
+                        "p90Nanos": %d, "p99Nanos": %d, "maxNanos": %d, "encodeNanos": %d,
+                              "histogram": {%s}}%s
+                        """
+                                .formatted(
+                                        jsonString(entry.getKey()),
+                                        nanos.size(),
+                                        nanos.stream().mapToLong(Long::longValue).sum(),
+                                        percentile(nanos, 50),
+                                        percentile(nanos, 90),
+                                        percentile(nanos, 99),
+                                        nanos.get(nanos.size() - 1),
+                                        encodeByRenderer.get(entry.getKey()),
+                                        buckets,
+                                        renderers.hasNext() ? "," : ""));
+            }
+            json.append("  }\n}\n");
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percent / 100));
+    }
+
+    private static String jsonString(String s) {
+        if (s == null) {
+            return "null";
+        }
+        var result = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < 0x20) {
+                result.append("\\u%04x".formatted((int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /** bytes allocated by the current thread so far, 0 if the JVM cannot tell. */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(gc -> Math.max(0, gc.getCollectionCount()))
+                .sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(gc -> Math.max(0, gc.getCollectionTime()))
+                .sum();
+    }
+
+    private static JComponent makeJComponent(int w, int h) {
         return new JComponent() {
             @Override
             public int getWidth() {